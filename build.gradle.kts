@@ -25,6 +25,18 @@ dependencies {
         // bundledPlugin("com.intellij.java")
     }
     implementation("com.sverko.ebnf:ebnf-parser-generator:0.2.8")
+    testImplementation("junit:junit:4.13.2")
+}
+
+// JMH benchmarks: src/jmh/java, run with ./gradlew jmh (results in build/jmh/results.json)
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+    runtimeClasspath += output + compileClasspath + sourceSets.main.get().runtimeClasspath
+}
+
+dependencies {
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 intellijPlatform {
@@ -57,4 +69,17 @@ kotlin {
     compilerOptions {
         jvmTarget.set(org.jetbrains.kotlin.gradle.dsl.JvmTarget.JVM_21)
     }
-}
\ No newline at end of file
+}
+
+tasks.register<JavaExec>("jmh") {
+    group = "verification"
+    description = "Runs the JMH benchmarks with the GC profiler and writes build/jmh/results.json."
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    val results = layout.buildDirectory.file("jmh/results.json")
+    outputs.file(results)
+    doFirst { results.get().asFile.parentFile.mkdirs() }
+    // ./gradlew jmh -Pjmh.includes=EbnfLexerBenchmark to run a subset
+    args(providers.gradleProperty("jmh.includes").getOrElse(".*"),
+        "-prof", "gc", "-rf", "json", "-rff", results.get().asFile.absolutePath)
+}
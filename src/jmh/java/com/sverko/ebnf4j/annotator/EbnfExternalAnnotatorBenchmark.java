@@ -0,0 +1,44 @@
+package com.sverko.ebnf4j.annotator;
+
+import com.sverko.ebnf4j.bench.EbnfBenchmarkInputs;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code doAnnotate} without project and document: every call computes the grammar model from
+ * scratch, i.e. the cost of opening a grammar, not of a keystroke.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EbnfExternalAnnotatorBenchmark {
+
+  @Param({"10", "100", "1000"})
+  public int rules;
+
+  private final EbnfExternalAnnotator annotator = new EbnfExternalAnnotator();
+  private String text;
+
+  @Setup
+  public void setUp() {
+    text = EbnfBenchmarkInputs.grammar(rules);
+  }
+
+  @Benchmark
+  public EbnfExternalAnnotator.Result doAnnotate() {
+    return annotator.doAnnotate(new EbnfExternalAnnotator.Input(text, null, 0, null));
+  }
+}
@@ -0,0 +1,50 @@
+package com.sverko.ebnf4j.annotator;
+
+import com.sverko.ebnf.Lexer;
+import com.sverko.ebnf4j.bench.EbnfBenchmarkInputs;
+import com.sverko.ebnf4j.lexer.EbnfTokenTable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Logic checks over the token table of a whole grammar, lexed once in the setup. A filler rule
+ * is about 40 tokens including whitespace, so the largest sizes reach one and four million
+ * tokens.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EbnfLogicAnalyzerBenchmark {
+
+  @Param({"100", "1000", "10000", "30000", "100000"})
+  public int rules;
+
+  private EbnfTokenTable tokens;
+  private EbnfLogicAnalyzer analyzer;
+
+  @Setup
+  public void setUp() {
+    String text = EbnfBenchmarkInputs.grammar(rules);
+    tokens = EbnfTokenTable.of(text, new Lexer(EbnfRuleAnalysis.SCHEMA_LEXER_TOKENS, true).lexText(text));
+    analyzer = new EbnfLogicAnalyzer(List.of());
+  }
+
+  @Benchmark
+  public List<EbnfLogicAnalyzer.LogicalIssue> analyzeGrammar() {
+    return analyzer.analyzeGrammar(tokens, EbnfCancellation.NONE);
+  }
+}
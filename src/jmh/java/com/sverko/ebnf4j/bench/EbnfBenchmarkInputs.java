@@ -0,0 +1,47 @@
+package com.sverko.ebnf4j.bench;
+
+/**
+ * Synthetic inputs for the benchmarks. Sizes grow linearly with the parameter, so results of
+ * neighbouring sizes show how a code path scales.
+ */
+public final class EbnfBenchmarkInputs {
+
+  private EbnfBenchmarkInputs() {
+  }
+
+  /**
+   * A grammar whose start rule is a repetition of {@code ENTRY} items ({@code NAME=123;}),
+   * followed by {@code fillerRules} chained rules using every operator of the language.
+   */
+  public static String grammar(int fillerRules) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("DOC = {ENTRY};\n");
+    sb.append("ENTRY = NAME, \"=\", NUMBER, \";\";\n");
+    sb.append("NAME = LETTER, {LETTER};\n");
+    sb.append("LETTER = ?GERMAN_CAPITALS?;\n");
+    sb.append("NUMBER = DIGIT, {DIGIT};\n");
+    sb.append("DIGIT = ?DIGIT?;\n");
+    for (int i = 0; i < fillerRules; i++) {
+      sb.append("RULE_").append(i).append(" = \"a").append(i).append("\", [RULE_").append(i + 1)
+          .append("] | {\"b\", DIGIT}, (NAME | NUMBER) | 2*[LETTER] - \"x\";\n");
+    }
+    sb.append("RULE_").append(fillerRules).append(" = \"end\";\n");
+    return sb.toString();
+  }
+
+  /** {@code entries} lines of test input accepted by {@link #grammar}. */
+  public static String payload(int entries) {
+    StringBuilder sb = new StringBuilder(entries * 12);
+    for (int i = 0; i < entries; i++) {
+      sb.append((char) ('A' + i % 26)).append((char) ('A' + i / 26 % 26)).append("X=")
+          .append(i).append(";\n");
+    }
+    return sb.toString();
+  }
+
+  /** {@code text} with one character in the middle replaced, so it is rejected from there on. */
+  public static String editInMiddle(String text) {
+    int middle = text.indexOf('=', text.length() / 2);
+    return text.substring(0, middle) + '+' + text.substring(middle + 1);
+  }
+}
@@ -0,0 +1,74 @@
+package com.sverko.ebnf4j.lexer;
+
+import com.intellij.lexer.Lexer;
+import com.intellij.util.text.ImmutableText;
+import com.sverko.ebnf4j.bench.EbnfBenchmarkInputs;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Highlighting lexer over whole grammars; one operation lexes the full text. {@code legacy*}
+ * runs the lexer as it was before the table-driven fast path. {@code lex} lexes a
+ * {@code String}, like the indexer; {@code *Document} lexes an {@link ImmutableText}, the
+ * buffer the editor highlighter gets from the document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EbnfLexerBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  public int rules;
+
+  private String text;
+  private CharSequence documentText;
+
+  @Setup
+  public void setUp() {
+    text = EbnfBenchmarkInputs.grammar(rules);
+    documentText = ImmutableText.valueOf(text);
+  }
+
+  @Benchmark
+  public int lex() {
+    return countTokens(new EbnfLexer(), text);
+  }
+
+  @Benchmark
+  public int lexDocument() {
+    return countTokens(new EbnfLexer(), documentText);
+  }
+
+  @Benchmark
+  public int legacyLex() {
+    return countTokens(new EbnfLegacyLexer(), text);
+  }
+
+  @Benchmark
+  public int legacyLexDocument() {
+    return countTokens(new EbnfLegacyLexer(), documentText);
+  }
+
+  private static int countTokens(Lexer lexer, CharSequence text) {
+    lexer.start(text, 0, text.length(), 0);
+    int tokens = 0;
+    while (lexer.getTokenType() != null) {
+      tokens++;
+      lexer.advance();
+    }
+    return tokens;
+  }
+}
@@ -0,0 +1,70 @@
+package com.sverko.ebnf4j.toolwindow;
+
+import com.sverko.ebnf4j.annotator.EbnfCancellation;
+import com.sverko.ebnf4j.bench.EbnfBenchmarkInputs;
+import com.sverko.ebnf4j.model.EbnfGrammarModel;
+import com.sverko.ebnf4j.model.EbnfTestGrammar;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parse-and-match of the live tester, headless: the test grammar comes from the static
+ * parser cache that is used when no application is running.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EbnfLiveMatcherBenchmark {
+
+  private static final int MAX_HIGHLIGHT_SEGMENTS = 1_000_000;
+
+  @Param({"1000", "10000", "100000"})
+  public int entries;
+
+  private EbnfTestGrammar grammar;
+  private Set<String> itemRules;
+  private String text;
+  private String edited;
+  private EbnfLiveMatcher incremental;
+  private boolean showEdited;
+
+  @Setup
+  public void setUp() {
+    EbnfGrammarModel model = EbnfGrammarModel.compute(null, EbnfBenchmarkInputs.grammar(0), 0, EbnfCancellation.NONE);
+    grammar = model.getTestGrammar();
+    if (grammar == null) throw new IllegalStateException("Benchmark grammar does not build a parser");
+    itemRules = model.getTopLevelItemRules();
+    text = EbnfBenchmarkInputs.payload(entries);
+    edited = EbnfBenchmarkInputs.editInMiddle(text);
+    incremental = new EbnfLiveMatcher(MAX_HIGHLIGHT_SEGMENTS);
+  }
+
+  /** Whole text, no previous run to resume from. */
+  @Benchmark
+  public List<EbnfLiveMatcher.MatchResult> fullParse() {
+    return new EbnfLiveMatcher(MAX_HIGHLIGHT_SEGMENTS)
+        .match(grammar, itemRules, text, null, null, EbnfCancellation.NONE);
+  }
+
+  /** Alternates between two texts differing in one character, like typing in the middle. */
+  @Benchmark
+  public List<EbnfLiveMatcher.MatchResult> editInMiddle() {
+    showEdited = !showEdited;
+    return incremental.match(grammar, itemRules, showEdited ? edited : text, null, null, EbnfCancellation.NONE);
+  }
+}
@@ -0,0 +1,54 @@
+package com.sverko.ebnf4j.annotator;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Cooperative cancellation of an analysis run. Polled from parse-node callbacks and from the
+ * analysis loops; throws {@link ProcessCanceledException} as soon as the run is superseded.
+ */
+public final class EbnfCancellation {
+
+  public static final EbnfCancellation NONE = new EbnfCancellation(() -> false);
+
+  /** Tight loops only really check on every n-th {@link #tick()}. */
+  private static final int TICK_INTERVAL = 256;
+
+  private final BooleanSupplier canceled;
+  private int ticks;
+
+  public EbnfCancellation(BooleanSupplier canceled) {
+    this.canceled = canceled;
+  }
+
+  /**
+   * Cancels once {@code document} is modified after {@code stamp} or the progress indicator of
+   * the calling thread is canceled. The indicator is captured here, so the check also works
+   * from worker threads.
+   */
+  public static EbnfCancellation forDocument(Document document, long stamp) {
+    ProgressIndicator indicator = ProgressManager.getGlobalProgressIndicator();
+    return new EbnfCancellation(() ->
+        document.getModificationStamp() != stamp || (indicator != null && indicator.isCanceled()));
+  }
+
+  public boolean isCanceled() {
+    return canceled.getAsBoolean();
+  }
+
+  public void checkCanceled() {
+    if (canceled.getAsBoolean()) throw new ProcessCanceledException();
+  }
+
+  /** Cheap variant of {@link #checkCanceled()} for per-token and per-event loops. */
+  public void tick() {
+    // Unsynchronized on purpose: concurrent workers may only shift the polling interval
+    if (++ticks >= TICK_INTERVAL) {
+      ticks = 0;
+      checkCanceled();
+    }
+  }
+}
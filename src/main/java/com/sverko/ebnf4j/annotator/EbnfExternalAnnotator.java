@@ -4,15 +4,16 @@ import com.intellij.lang.annotation.AnnotationHolder;
 import com.intellij.lang.annotation.ExternalAnnotator;
 import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.colors.TextAttributesKey;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiFile;
-import com.sverko.ebnf.EbnfParserGenerator;
-import com.sverko.ebnf.ParseNode;
-import com.sverko.ebnf.TokenQueue;
 import com.sverko.ebnf4j.EbnfFileType;
 import com.sverko.ebnf4j.EbnfLanguage;
-import java.util.Map;
-import java.util.Set;
+import com.sverko.ebnf4j.highlighting.EbnfSyntaxHighlighter;
+import com.sverko.ebnf4j.model.EbnfGrammarModel;
+import com.sverko.ebnf4j.model.EbnfGrammarModelService;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -22,32 +23,22 @@ import java.util.List;
 /**
  * Runs lightweight syntax/structure checks off the EDT and annotates issues.
  * Uses EBNF4J ParseNodeEvents (with token indices) and maps them to document offsets.
+ * Analysis is rule-granular and shared: the {@link EbnfGrammarModel} of the document reuses the results of unchanged rules.
+ * Definitions and references are coloured from the symbol lists of the model.
  */
 public class EbnfExternalAnnotator extends ExternalAnnotator<EbnfExternalAnnotator.Input, EbnfExternalAnnotator.Result> {
 
-  private static final Set<String> SCHEMA_LEXER_TOKENS = Set.of("\\n","\\t","\\s","{:");
-  private static final List<String> PREDEFINED_NODE_NAMES =
-      new EbnfParserGenerator().getDefaultEventEmittingNodes();
-
-  private static final ThreadLocal<com.sverko.ebnf.Parser> SCHEMA_PARSER =
-      ThreadLocal.withInitial(() -> {
-        System.out.println("\nSchema parser build\n");
-        ParseNode ebnfSchemaStartNode = com.sverko.ebnf.EbnfParseTree.getStartNode();
-        Map<String, ParseNode> ebnfNodeMap = com.sverko.ebnf.EbnfParseTree.getNodeMap();
-        return new com.sverko.ebnf.Parser(
-            ebnfSchemaStartNode,
-            ebnfNodeMap,
-            SCHEMA_LEXER_TOKENS,
-            false
-        );
-      });
-
+  /** Without document and project (benchmarks), the grammar model is computed from scratch. */
   public static class Input {
-    final String text;
-    final Document document;
-    public Input(String text, Document document) {
+    final CharSequence text;
+    final @Nullable Document document;
+    final long stamp;
+    final @Nullable Project project;
+    public Input(CharSequence text, @Nullable Document document, long stamp, @Nullable Project project) {
       this.text = text;
       this.document = document;
+      this.stamp = stamp;
+      this.project = project;
     }
   }
 
@@ -66,6 +57,9 @@ public class EbnfExternalAnnotator extends ExternalAnnotator<EbnfExternalAnnotat
 
   public static class Result {
     final List<Problem> problems = new ArrayList<>();
+    // Shared with the model, not copied
+    List<EbnfRuleAnalysis.Symbol> definitions = List.of();
+    List<EbnfRuleAnalysis.Symbol> references = List.of();
   }
 
   @Override
@@ -73,97 +67,52 @@ public class EbnfExternalAnnotator extends ExternalAnnotator<EbnfExternalAnnotat
     if (file.getFileType() != EbnfFileType.INSTANCE || file.getLanguage() != EbnfLanguage.INSTANCE) return null;
     Document doc = file.getViewProvider().getDocument();
     if (doc == null) return null;
-    return new Input(doc.getText(), doc);
+    // Immutable snapshot; only copied if the model of this stamp is not computed yet
+    return new Input(doc.getImmutableCharSequence(), doc, doc.getModificationStamp(), file.getProject());
   }
 
   @Override
   public @Nullable Result doAnnotate(Input input) {
     if (input == null) return null;
 
-    if (input.text.length() > 100_000) {
-      return new Result();
-    }
-
     Result result = new Result();
 
     try {
-      long startTime = System.currentTimeMillis();
-      EbnfSymbolTracker symbolTracker = new EbnfSymbolTracker(PREDEFINED_NODE_NAMES);
-
-      // Use the EBNF Lexer to get tokens (for offset calculation)
-      com.sverko.ebnf.Lexer ebnfLexer = new com.sverko.ebnf.Lexer(SCHEMA_LEXER_TOKENS, true);
-      TokenQueue tokens = ebnfLexer.lexText(input.text);
-
-      // Build token→document mapping (start + length per token)
-      TokenMap tm = computeTokenMapByCumulativeOffsets(input.text, tokens.getTokens());
-      int[] tokenStartOffsets = tm.starts;
-      int[] tokenLengths = tm.lengths;
-
-      // NEW: Use the hardcoded EBNF schema parser instead of generated parser
-      // Reuse the schema parser (per thread) instead of rebuilding per keystroke
-      com.sverko.ebnf.Parser schemaParser = SCHEMA_PARSER.get();
-
-      // Add symbol tracker as event listener to all relevant EBNF nodes
-      schemaParser.assignNodeEventListeners(symbolTracker, PREDEFINED_NODE_NAMES.toArray(new String[0]));
-
-      int parseResult = schemaParser.parse(input.text);
-
-      // NEW: Check for syntax errors based on parse result
-      if (parseResult >= 0 && parseResult < tokens.size()) {
-        int startOffset = tokenStartOffsets[parseResult];
-        int endOffset   = startOffset + tokenLengths[parseResult];
-        String errorToken = tokens.get(parseResult);
-        result.problems.add(new Problem(
-            startOffset, endOffset,
-            "Syntax error: unexpected token '" + errorToken + "'",
-            HighlightSeverity.ERROR));
-      }
-      // Note: parseResult == -2 (END_OF_QUEUE) is ignored during input - that's normal
-      // After existing symbol tracking, add logical analysis
-      EbnfLogicAnalyzer logicAnalyzer = new EbnfLogicAnalyzer(symbolTracker.getDefinitions());
-      List<EbnfLogicAnalyzer.LogicalIssue> logicalIssues = logicAnalyzer.analyzeGrammar(input.text, tokens);
-
-      // Add logical issues to results
-      for (EbnfLogicAnalyzer.LogicalIssue issue : logicalIssues) {
-        if (issue.tokenIndex >= 0 && issue.tokenIndex < tokens.size()) {
-          int startOffset = tokenStartOffsets[issue.tokenIndex];
-          int endOffset   = startOffset + tokenLengths[issue.tokenIndex];
+      // Stop as soon as the document changes, the result would be discarded anyway
+      EbnfCancellation cancellation = input.document != null
+          ? EbnfCancellation.forDocument(input.document, input.stamp) : EbnfCancellation.NONE;
+
+      // Shared with the other consumers; only rules whose text changed are analysed again
+      EbnfGrammarModel model = input.project != null && input.document != null
+          ? EbnfGrammarModelService.getInstance(input.project)
+              .getModel(input.document, input.text, input.stamp, cancellation)
+          : EbnfGrammarModel.compute(null, input.text.toString(), input.stamp, cancellation);
+      EbnfRuleCache rules = model.getRules();
+
+      for (int r = 0; r < rules.size(); r++) {
+        cancellation.tick();
+        EbnfRuleAnalysis rule = rules.getRule(r);
+        int ruleOffset = rules.getRuleOffset(r);
+        for (Problem p : rule.problems) {
           result.problems.add(new Problem(
-              startOffset, endOffset, issue.message, issue.severity));
+              ruleOffset + p.startOffset, ruleOffset + p.endOffset, p.message, p.severity));
         }
       }
 
-      if (System.currentTimeMillis() - startTime > 1000) {
-        return result;
-      }
-
-      // Create annotations from symbolTracker results
-      for (EbnfSymbolTracker.SymbolInfo undef : symbolTracker.getUndefinedReferences()) {
-        int s = Math.max(0, undef.startTokenIndex);
-        int e = Math.min(tokens.size(), Math.max(s, undef.endTokenIndex)); // exklusiv
-        for (int ti = s; ti < e; ti++) {
-          int startOffset = tokenStartOffsets[ti];
-          int endOffset   = startOffset + tokenLengths[ti];
-          result.problems.add(new Problem(
-              startOffset, endOffset,
-              "Undefined symbol: '" + undef.name + "'",
-              HighlightSeverity.ERROR));
-        }
-      }
-
-      for (EbnfSymbolTracker.SymbolInfo def : symbolTracker.getDefinitions()) {
-        int s = Math.max(0, def.startTokenIndex);
-        int e = Math.min(tokens.rawSize(), Math.max(s, def.endTokenIndex));
-        for (int ti = s; ti < e; ti++) {
-          int startOffset = tokenStartOffsets[ti];
-          int endOffset   = startOffset + tokenLengths[ti];
-          result.problems.add(new Problem(
-              startOffset, endOffset,
-              "Definition: '" + def.name + "'",
-              HighlightSeverity.INFORMATION));
-        }
+      // Project-wide checks are recomputed from the cached per-rule results
+      for (EbnfRuleAnalysis.Symbol ref : model.getReferences()) {
+        cancellation.tick();
+        if (model.isDefined(ref.name)) continue;
+        result.problems.add(new Problem(
+            ref.startOffset, ref.endOffset,
+            "Undefined symbol: '" + ref.name + "'",
+            HighlightSeverity.ERROR));
       }
+      result.definitions = model.getDefinitions();
+      result.references = model.getReferences();
 
+    } catch (ProcessCanceledException e) {
+      throw e;
     } catch (Exception e) {
       System.err.println("Error in EBNF annotation: " + e.getMessage());
       e.printStackTrace();
@@ -181,43 +130,19 @@ public class EbnfExternalAnnotator extends ExternalAnnotator<EbnfExternalAnnotat
           .range(new TextRange(p.startOffset, p.endOffset))
           .create();
     }
+    int length = file.getTextLength();
+    colour(result.definitions, EbnfSyntaxHighlighter.DEFINITION_KEY, length, holder);
+    colour(result.references, EbnfSyntaxHighlighter.REFERENCE_KEY, length, holder);
   }
 
-  // ---- Mapping-Utilities ----------------------------------------------------
-
-  private static class TokenMap {
-    final int[] starts;
-    final int[] lengths;
-    TokenMap(int[] starts, int[] lengths) {
-      this.starts = starts;
-      this.lengths = lengths;
-    }
-  }
-
-  private static TokenMap computeTokenMapByCumulativeOffsets(String text, List<String> tokens) {
-    int[] starts = new int[tokens.size()];
-    int[] lengths = new int[tokens.size()];
-
-    int cursor = 0;
-    for (int i = 0; i < tokens.size(); i++) {
-      String tok = tokens.get(i);
-      if (tok == null) tok = "";
-
-      starts[i] = cursor;
-      lengths[i] = tok.length();
-      cursor += tok.length();
-
-      if (cursor > text.length()) {
-        // safety: clamp
-        starts[i] = Math.min(starts[i], text.length());
-        lengths[i] = Math.max(0, text.length() - starts[i]);
-        cursor = text.length();
-      }
+  private static void colour(List<EbnfRuleAnalysis.Symbol> symbols, TextAttributesKey key, int length,
+                             AnnotationHolder holder) {
+    for (EbnfRuleAnalysis.Symbol s : symbols) {
+      if (s.endOffset > length) continue;
+      holder.newSilentAnnotation(HighlightSeverity.INFORMATION)
+          .range(new TextRange(s.startOffset, s.endOffset))
+          .textAttributes(key)
+          .create();
     }
-    return new TokenMap(starts, lengths);
-  }
-
-  private static int indexOfTokenForward(String text, int from, String tok) {
-    return text.indexOf(tok, from);
   }
 }
@@ -1,7 +1,7 @@
 package com.sverko.ebnf4j.annotator;
 
 import com.intellij.lang.annotation.HighlightSeverity;
-import com.sverko.ebnf.TokenQueue;
+import com.sverko.ebnf4j.lexer.EbnfTokenTable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -25,129 +25,106 @@ public class EbnfLogicAnalyzer {
         }
     }
     
-    public List<LogicalIssue> analyzeGrammar(String text, TokenQueue tokens) {
+    public List<LogicalIssue> analyzeGrammar(EbnfTokenTable tokens, EbnfCancellation cancellation) {
         List<LogicalIssue> issues = new ArrayList<>();
-        
-        findUnreachableAlternatives(tokens.getTokens(), issues);
-        findAlwaysEmptyLoops(tokens.getTokens(), issues);
-        findRedundantOptionals(tokens.getTokens(), issues);
-        findInvalidRepetitions(tokens.getTokens(), issues);
-        
-        return issues;
-    }
-    
-    private void findUnreachableAlternatives(List<String> tokens, List<LogicalIssue> issues) {
-        for (int i = 0; i < tokens.size() - 4; i++) {
-            // Pattern: {X} | Y - Y ist nie erreichbar
-            if (tokens.get(i).equals("{") && 
-                findClosingBrace(tokens, i) != -1) {
-                
-                int closingBrace = findClosingBrace(tokens, i);
-                if (closingBrace + 1 < tokens.size() && 
-                    tokens.get(closingBrace + 1).equals("|")) {
-                    
-                    int alternativeIndex = closingBrace + 2;
-                    if (alternativeIndex < tokens.size()) {
-                        issues.add(new LogicalIssue(alternativeIndex,
-                            "Unreachable alternative - '{...}' always matches (including empty)",
-                            HighlightSeverity.WARNING));
+        int n = tokens.size();
+        int[] partner = computePartnerIndex(tokens);
+        int plusId = tokens.idOf("+");
+
+        // Single scan, all detectors look at the same position
+        for (int i = 0; i < n; i++) {
+            cancellation.tick();
+            switch (tokens.getKind(i)) {
+                case EbnfTokenTable.L_BRACE:
+                    // Pattern: {X} | Y - Y ist nie erreichbar
+                    if (i < n - 4 && partner[i] != -1) {
+                        int closingBrace = partner[i];
+                        if (closingBrace + 2 < n && tokens.getKind(closingBrace + 1) == EbnfTokenTable.PIPE) {
+                            issues.add(new LogicalIssue(closingBrace + 2,
+                                "Unreachable alternative - '{...}' always matches (including empty)",
+                                HighlightSeverity.WARNING));
+                        }
                     }
-                }
-            }
-        }
-    }
-    
-    private void findAlwaysEmptyLoops(List<String> tokens, List<LogicalIssue> issues) {
-        for (int i = 0; i < tokens.size() - 2; i++) {
-            // Pattern: {""} oder {''} - immer leere Schleife
-            if (tokens.get(i).equals("{") && 
-                i + 2 < tokens.size() &&
-                (tokens.get(i + 1).equals("\"\"") || tokens.get(i + 1).equals("''")) &&
-                tokens.get(i + 2).equals("}")) {
-                
-                issues.add(new LogicalIssue(i,
-                    "Infinite empty loop - '{\"\"'}' creates endless empty matches",
-                    HighlightSeverity.ERROR));
-            }
-        }
-    }
-    
-    private void findRedundantOptionals(List<String> tokens, List<LogicalIssue> issues) {
-        for (int i = 0; i < tokens.size() - 4; i++) {
-            // Pattern: [X] | X - redundant
-            if (tokens.get(i).equals("[")) {
-                int closingBracket = findClosingBracket(tokens, i);
-                if (closingBracket != -1 && closingBracket + 1 < tokens.size() && tokens.get(closingBracket + 1).equals("|")) {
-                    int alternativeIndex = closingBracket + 2;
-                    if (alternativeIndex < tokens.size() && tokens.get(i + 1).equals(tokens.get(alternativeIndex))) {
-                        issues.add(new LogicalIssue(alternativeIndex,
-                            "Redundant alternative - '[" + tokens.get(i + 1) + "]' already includes '" + tokens.get(alternativeIndex) + "'",
-                            HighlightSeverity.WARNING));
+                    // Pattern: {""} oder {''} - immer leere Schleife
+                    if (i < n - 2 &&
+                        tokens.getKind(i + 1) == EbnfTokenTable.STRING && tokens.getLength(i + 1) == 2 &&
+                        tokens.getKind(i + 2) == EbnfTokenTable.R_BRACE) {
+                        issues.add(new LogicalIssue(i,
+                            "Infinite empty loop - '{\"\"'}' creates endless empty matches",
+                            HighlightSeverity.ERROR));
                     }
-                }
-            }
-        }
-    }
+                    break;
 
-    private void findInvalidRepetitions(List<String> tokens,  List<LogicalIssue> issues) {
-        for (int i = 0; i < tokens.size() - 2; i++) {
-            // Pattern: (X)* or (X)+ - invalid repetition
-            if (tokens.get(i).equals(")") && (tokens.get(i + 1).equals("*") || tokens.get(i + 1).equals("+"))) {
-                int openingParenthesis = findOpeningParenthesis(tokens, i);
-                if (openingParenthesis != -1) {
-                    issues.add(new LogicalIssue(i,
-                        "Invalid repetition - repetitions are not allowed on grouped expressions",
-                        HighlightSeverity.ERROR));
-                }
-            }
-        }
-    }
+                case EbnfTokenTable.L_BRACKET:
+                    // Pattern: [X] | X - redundant
+                    if (i < n - 4 && partner[i] != -1) {
+                        int closingBracket = partner[i];
+                        int alternativeIndex = closingBracket + 2;
+                        if (alternativeIndex < n && tokens.getKind(closingBracket + 1) == EbnfTokenTable.PIPE &&
+                            tokens.getId(i + 1) == tokens.getId(alternativeIndex)) {
+                            issues.add(new LogicalIssue(alternativeIndex,
+                                "Redundant alternative - '[" + tokens.getText(i + 1) + "]' already includes '" + tokens.getText(alternativeIndex) + "'",
+                                HighlightSeverity.WARNING));
+                        }
+                    }
+                    break;
+
+                case EbnfTokenTable.R_PAREN:
+                    // Pattern: (X)* or (X)+ - invalid repetition
+                    if (i < n - 2 && partner[i] != -1 &&
+                        (tokens.getKind(i + 1) == EbnfTokenTable.STAR || tokens.getId(i + 1) == plusId)) {
+                        issues.add(new LogicalIssue(i,
+                            "Invalid repetition - repetitions are not allowed on grouped expressions",
+                            HighlightSeverity.ERROR));
+                    }
+                    break;
 
-    private int findClosingBrace(List<String> tokens, int startIndex) {
-        int braceCount = 0;
-        for (int i = startIndex + 1; i < tokens.size(); i++) {
-            if (tokens.get(i).equals("{")) {
-                braceCount++;
-            } else if (tokens.get(i).equals("}")) {
-                if (braceCount == 0) {
-                    return i;
-                } else {
-                    braceCount--;
-                }
+                default:
+                    break;
             }
         }
-        return -1;
+
+        return issues;
     }
-    
-    private int findClosingBracket(List<String> tokens, int startIndex) {
-        int bracketCount = 0;
-        for (int i = startIndex + 1; i < tokens.size(); i++) {
-            if (tokens.get(i).equals("[")) {
-                bracketCount++;
-            } else if (tokens.get(i).equals("]")) {
-                if (bracketCount == 0) {
-                    return i;
-                } else {
-                    bracketCount--;
-                }
+
+    /**
+     * Computes the partner of every bracket in one pass: for an opening bracket the index of its
+     * closing bracket and vice versa, {@code -1} for unbalanced ones and all other tokens.
+     * Each kind ({@code {}}, {@code []}, {@code ()}) is matched on its own, the other kinds do
+     * not interfere with the nesting.
+     */
+    static int[] computePartnerIndex(EbnfTokenTable tokens) {
+        int n = tokens.size();
+        int[] partner = new int[n];
+        // Open brackets of the same kind are chained into a stack through this array
+        int[] belowOnStack = new int[n];
+        int[] stackTop = {-1, -1, -1};
+
+        for (int i = 0; i < n; i++) {
+            partner[i] = -1;
+            int kind = tokens.getKind(i);
+            int bracket = bracketKind(kind);
+            if (bracket < 0) continue;
+
+            if (kind == EbnfTokenTable.L_BRACE || kind == EbnfTokenTable.L_BRACKET || kind == EbnfTokenTable.L_PAREN) {
+                belowOnStack[i] = stackTop[bracket];
+                stackTop[bracket] = i;
+            } else if (stackTop[bracket] != -1) {
+                int open = stackTop[bracket];
+                stackTop[bracket] = belowOnStack[open];
+                partner[open] = i;
+                partner[i] = open;
             }
         }
-        return -1;
+        return partner;
     }
 
-    private int findOpeningParenthesis(List<String> tokens, int startIndex) {
-        int parenthesisCount = 0;
-        for (int i = startIndex - 1; i >= 0; i--) {
-            if (tokens.get(i).equals(")")) {
-                parenthesisCount++;
-            } else if (tokens.get(i).equals("(")) {
-                if (parenthesisCount == 0) {
-                    return i;
-                } else {
-                    parenthesisCount--;
-                }
-            }
+    private static int bracketKind(int kind) {
+        switch (kind) {
+            case EbnfTokenTable.L_BRACE: case EbnfTokenTable.R_BRACE: return 0;
+            case EbnfTokenTable.L_BRACKET: case EbnfTokenTable.R_BRACKET: return 1;
+            case EbnfTokenTable.L_PAREN: case EbnfTokenTable.R_PAREN: return 2;
+            default: return -1;
         }
-        return -1;
     }
-}
\ No newline at end of file
+}
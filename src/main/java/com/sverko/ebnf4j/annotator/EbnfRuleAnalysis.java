@@ -0,0 +1,138 @@
+package com.sverko.ebnf4j.annotator;
+
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.sverko.ebnf.EbnfParserGenerator;
+import com.sverko.ebnf.ParseNode;
+import com.sverko.ebnf.ParseNodeEvent;
+import com.sverko.ebnf.ParseNodeEventListener;
+import com.sverko.ebnf4j.lexer.EbnfTokenTable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Analysis result of a single grammar rule (syntax check, logic checks, definitions and references).
+ * All offsets are relative to the start of the rule text, so a result can be reused wherever the
+ * same rule text shows up again.
+ */
+public class EbnfRuleAnalysis {
+
+  static final Set<String> SCHEMA_LEXER_TOKENS = Set.of("\\n","\\t","\\s","{:");
+  static final List<String> PREDEFINED_NODE_NAMES =
+      new EbnfParserGenerator().getDefaultEventEmittingNodes();
+
+  private static final ThreadLocal<SchemaParser> SCHEMA_PARSER =
+      ThreadLocal.withInitial(SchemaParser::new);
+
+  public static class Symbol {
+    public final String name;
+    public final int startOffset;
+    public final int endOffset;
+    public Symbol(String name, int startOffset, int endOffset) {
+      this.name = name;
+      this.startOffset = startOffset;
+      this.endOffset = endOffset;
+    }
+  }
+
+  final EbnfTokenTable tokens;
+  final List<EbnfExternalAnnotator.Problem> problems;
+  final List<Symbol> definitions;
+  final List<Symbol> references;
+
+  private EbnfRuleAnalysis(EbnfTokenTable tokens, List<EbnfExternalAnnotator.Problem> problems,
+                           List<Symbol> definitions, List<Symbol> references) {
+    this.tokens = tokens;
+    this.problems = problems;
+    this.definitions = definitions;
+    this.references = references;
+  }
+
+  public static List<String> getPredefinedNames() { return PREDEFINED_NODE_NAMES; }
+
+  public EbnfTokenTable getTokens() { return tokens; }
+  public List<EbnfExternalAnnotator.Problem> getProblems() { return problems; }
+  public List<Symbol> getDefinitions() { return definitions; }
+  public List<Symbol> getReferences() { return references; }
+
+  static EbnfRuleAnalysis analyze(String ruleText, EbnfCancellation cancellation) {
+    List<EbnfExternalAnnotator.Problem> problems = new ArrayList<>();
+
+    // Lex once; kinds, offsets and ids are shared by the tracker, the analyzer and the offset mapping
+    com.sverko.ebnf.Lexer ebnfLexer = new com.sverko.ebnf.Lexer(SCHEMA_LEXER_TOKENS, true);
+    EbnfTokenTable tokens = EbnfTokenTable.of(ruleText, ebnfLexer.lexText(ruleText));
+    EbnfSymbolTracker symbolTracker = new EbnfSymbolTracker(PREDEFINED_NODE_NAMES, tokens);
+
+    // Reuse the schema parser (per thread) instead of rebuilding per keystroke
+    SchemaParser schemaParser = SCHEMA_PARSER.get();
+    int parseResult;
+    schemaParser.tracker = symbolTracker;
+    schemaParser.cancellation = cancellation;
+    try {
+      parseResult = schemaParser.parser.parse(ruleText);
+    } finally {
+      schemaParser.tracker = null;
+      schemaParser.cancellation = EbnfCancellation.NONE;
+    }
+    // The parser may swallow exceptions thrown from listeners
+    cancellation.checkCanceled();
+
+    if (parseResult >= 0 && parseResult < tokens.size()) {
+      problems.add(new EbnfExternalAnnotator.Problem(
+          tokens.getStart(parseResult), tokens.getEnd(parseResult),
+          "Syntax error: unexpected token '" + tokens.getText(parseResult) + "'",
+          HighlightSeverity.ERROR));
+    }
+    // Note: parseResult == -2 (END_OF_QUEUE) is ignored during input - that's normal
+
+    EbnfLogicAnalyzer logicAnalyzer = new EbnfLogicAnalyzer(symbolTracker.getDefinitions());
+    for (EbnfLogicAnalyzer.LogicalIssue issue : logicAnalyzer.analyzeGrammar(tokens, cancellation)) {
+      if (issue.tokenIndex >= 0 && issue.tokenIndex < tokens.size()) {
+        problems.add(new EbnfExternalAnnotator.Problem(
+            tokens.getStart(issue.tokenIndex), tokens.getEnd(issue.tokenIndex), issue.message, issue.severity));
+      }
+    }
+
+    return new EbnfRuleAnalysis(tokens, problems,
+        toSymbols(symbolTracker.getDefinitions()),
+        toSymbols(symbolTracker.getReferences()));
+  }
+
+  private static List<Symbol> toSymbols(List<EbnfSymbolTracker.SymbolInfo> infos) {
+    List<Symbol> symbols = new ArrayList<>(infos.size());
+    for (EbnfSymbolTracker.SymbolInfo info : infos) {
+      if (info.startOffset < 0) continue;
+      symbols.add(new Symbol(info.name, info.startOffset, info.endOffset));
+    }
+    return symbols;
+  }
+
+  /**
+   * Schema parser of one thread. The listener is assigned once; every run points it at its own
+   * tracker and cancellation.
+   */
+  private static class SchemaParser implements ParseNodeEventListener {
+    final com.sverko.ebnf.Parser parser;
+    EbnfSymbolTracker tracker;
+    EbnfCancellation cancellation = EbnfCancellation.NONE;
+
+    SchemaParser() {
+      ParseNode ebnfSchemaStartNode = com.sverko.ebnf.EbnfParseTree.getStartNode();
+      Map<String, ParseNode> ebnfNodeMap = com.sverko.ebnf.EbnfParseTree.getNodeMap();
+      parser = new com.sverko.ebnf.Parser(
+          ebnfSchemaStartNode,
+          ebnfNodeMap,
+          SCHEMA_LEXER_TOKENS,
+          false
+      );
+      parser.assignNodeEventListeners(this, PREDEFINED_NODE_NAMES.toArray(new String[0]));
+    }
+
+    @Override
+    public void parseNodeEventOccurred(ParseNodeEvent e) {
+      cancellation.tick();
+      if (tracker != null) tracker.parseNodeEventOccurred(e);
+    }
+  }
+}
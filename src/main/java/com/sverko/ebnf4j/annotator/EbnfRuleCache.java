@@ -0,0 +1,209 @@
+package com.sverko.ebnf4j.annotator;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.sverko.ebnf4j.lexer.EbnfLexer;
+import com.sverko.ebnf4j.lexer.EbnfTokenTypes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Rule-granular analysis state of one grammar text. The grammar is split at its rule terminators and
+ * every rule is keyed by its text, so a run only analyses rules whose text changed since the
+ * previous run. Results of rules that disappeared are dropped with the previous cache.
+ * Large amounts of changed text (e.g. opening a big grammar) are sharded at rule boundaries and
+ * analysed in parallel on the application pool.
+ */
+public class EbnfRuleCache {
+
+  /** Changed text below this size is analysed on the calling thread. */
+  private static final int PARALLEL_THRESHOLD_CHARS = 32_000;
+  /** Approximate size of one shard of rules analysed by a single task. */
+  private static final int SHARD_CHARS = 16_000;
+
+  // Backed by the application pool, which owns the threads; no shutdown needed
+  private static final ExecutorService ANALYSIS_EXECUTOR = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+      "EBNF Rule Analysis", Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+  private final Map<String, EbnfRuleAnalysis> analysesByText;
+  private final int[] ruleOffsets;
+  private final EbnfRuleAnalysis[] rules;
+  private final int reusedCount;
+
+  private EbnfRuleCache(Map<String, EbnfRuleAnalysis> analysesByText, int[] ruleOffsets,
+                        EbnfRuleAnalysis[] rules, int reusedCount) {
+    this.analysesByText = analysesByText;
+    this.ruleOffsets = ruleOffsets;
+    this.rules = rules;
+    this.reusedCount = reusedCount;
+  }
+
+  /**
+   * Analyses {@code text}, taking the results of unchanged rules from {@code previous}.
+   * Throws {@link com.intellij.openapi.progress.ProcessCanceledException} once {@code cancellation} fires.
+   */
+  public static EbnfRuleCache update(@Nullable EbnfRuleCache previous, String text, EbnfCancellation cancellation) {
+    List<TextRange> ranges = splitRules(text);
+    Map<String, EbnfRuleAnalysis> analysesByText = new HashMap<>(ranges.size() * 2);
+    String[] ruleTexts = new String[ranges.size()];
+    int[] ruleOffsets = new int[ranges.size()];
+    int reused = 0;
+
+    // Take over everything unchanged, collect the rest
+    List<String> changed = new ArrayList<>();
+    int changedChars = 0;
+    for (int i = 0; i < ranges.size(); i++) {
+      cancellation.tick();
+      TextRange range = ranges.get(i);
+      String ruleText = blankComments(range.substring(text));
+      ruleTexts[i] = ruleText;
+      ruleOffsets[i] = range.getStartOffset();
+      if (analysesByText.containsKey(ruleText)) {
+        reused++;
+        continue;
+      }
+      EbnfRuleAnalysis analysis = previous != null ? previous.analysesByText.get(ruleText) : null;
+      if (analysis != null) {
+        reused++;
+      } else {
+        changed.add(ruleText);
+        changedChars += ruleText.length();
+      }
+      analysesByText.put(ruleText, analysis);
+    }
+
+    String[] changedTexts = changed.toArray(new String[0]);
+    EbnfRuleAnalysis[] changedResults = changedChars < PARALLEL_THRESHOLD_CHARS
+        ? analyzeSequentially(changedTexts, 0, changedTexts.length, cancellation)
+        : analyzeInParallel(changedTexts, cancellation);
+    for (int i = 0; i < changedTexts.length; i++) {
+      analysesByText.put(changedTexts[i], changedResults[i]);
+    }
+
+    EbnfRuleAnalysis[] rules = new EbnfRuleAnalysis[ruleTexts.length];
+    for (int i = 0; i < ruleTexts.length; i++) {
+      rules[i] = analysesByText.get(ruleTexts[i]);
+    }
+    return new EbnfRuleCache(analysesByText, ruleOffsets, rules, reused);
+  }
+
+  private static EbnfRuleAnalysis[] analyzeSequentially(String[] ruleTexts, int from, int to,
+                                                        EbnfCancellation cancellation) {
+    EbnfRuleAnalysis[] results = new EbnfRuleAnalysis[to - from];
+    for (int i = from; i < to; i++) {
+      cancellation.checkCanceled();
+      results[i - from] = EbnfRuleAnalysis.analyze(ruleTexts[i], cancellation);
+    }
+    return results;
+  }
+
+  /**
+   * Analyses {@code ruleTexts} in shards of about {@link #SHARD_CHARS}. The first shard runs on the
+   * calling thread, the others on {@link #ANALYSIS_EXECUTOR}; the results are merged back in order.
+   */
+  private static EbnfRuleAnalysis[] analyzeInParallel(String[] ruleTexts, EbnfCancellation cancellation) {
+    List<Integer> shardStarts = new ArrayList<>();
+    int chars = SHARD_CHARS;
+    for (int i = 0; i < ruleTexts.length; i++) {
+      if (chars >= SHARD_CHARS) {
+        shardStarts.add(i);
+        chars = 0;
+      }
+      chars += ruleTexts[i].length();
+    }
+    shardStarts.add(ruleTexts.length);
+
+    List<Future<EbnfRuleAnalysis[]>> futures = new ArrayList<>();
+    try {
+      for (int s = 1; s + 1 < shardStarts.size(); s++) {
+        int from = shardStarts.get(s);
+        int to = shardStarts.get(s + 1);
+        futures.add(ANALYSIS_EXECUTOR.submit(() -> analyzeSequentially(ruleTexts, from, to, cancellation)));
+      }
+      EbnfRuleAnalysis[] results = new EbnfRuleAnalysis[ruleTexts.length];
+      EbnfRuleAnalysis[] first = analyzeSequentially(ruleTexts, 0, shardStarts.get(1), cancellation);
+      System.arraycopy(first, 0, results, 0, first.length);
+      for (int s = 0; s < futures.size(); s++) {
+        EbnfRuleAnalysis[] shard = futures.get(s).get();
+        System.arraycopy(shard, 0, results, shardStarts.get(s + 1), shard.length);
+      }
+      return results;
+    } catch (ExecutionException e) {
+      // Rethrows cancellations and failures of a shard as they are
+      if (e.getCause() instanceof RuntimeException r) throw r;
+      if (e.getCause() instanceof Error err) throw err;
+      throw new IllegalStateException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessCanceledException(e);
+    } finally {
+      for (Future<EbnfRuleAnalysis[]> future : futures) future.cancel(false);
+    }
+  }
+
+  public int size() { return rules.length; }
+  public int getRuleOffset(int index) { return ruleOffsets[index]; }
+  public EbnfRuleAnalysis getRule(int index) { return rules[index]; }
+  public int getReusedCount() { return reusedCount; }
+
+  /**
+   * Splits a grammar into rule ranges. A rule starts at its first token that is neither
+   * whitespace nor comment and ends with its terminator ({@code ;}); trailing text without a
+   * terminator forms a last rule. Terminators inside strings, special sequences and comments are
+   * handled by the lexer.
+   */
+  static List<TextRange> splitRules(CharSequence text) {
+    List<TextRange> ranges = new ArrayList<>();
+    EbnfLexer lexer = new EbnfLexer();
+    lexer.start(text, 0, text.length(), 0);
+
+    int ruleStart = -1;
+    int ruleEnd = -1;
+    IElementType type;
+    while ((type = lexer.getTokenType()) != null) {
+      if (type != EbnfTokenTypes.WHITESPACE && type != EbnfTokenTypes.COMMENT) {
+        if (ruleStart < 0) ruleStart = lexer.getTokenStart();
+        ruleEnd = lexer.getTokenEnd();
+        if (type == EbnfTokenTypes.SEMICOLON) {
+          ranges.add(new TextRange(ruleStart, lexer.getTokenEnd()));
+          ruleStart = -1;
+        }
+      }
+      lexer.advance();
+    }
+    if (ruleStart >= 0) {
+      ranges.add(new TextRange(ruleStart, ruleEnd));
+    }
+    return ranges;
+  }
+
+  /**
+   * {@code text} with the characters of all {@code (* ... *)} comments except line ends replaced
+   * by spaces. The schema parser does not know comments; blanking keeps all offsets intact.
+   */
+  public static String blankComments(String text) {
+    if (!text.contains("(*")) return text;
+    char[] chars = null;
+    EbnfLexer lexer = new EbnfLexer();
+    lexer.start(text, 0, text.length(), EbnfLexer.INITIAL);
+    IElementType type;
+    while ((type = lexer.getTokenType()) != null) {
+      if (type == EbnfTokenTypes.COMMENT) {
+        if (chars == null) chars = text.toCharArray();
+        for (int i = lexer.getTokenStart(); i < lexer.getTokenEnd(); i++) {
+          if (chars[i] != '\n') chars[i] = ' ';
+        }
+      }
+      lexer.advance();
+    }
+    return chars != null ? new String(chars) : text;
+  }
+}
@@ -1,6 +1,7 @@
 package com.sverko.ebnf4j.annotator;
 
 import com.sverko.ebnf.ParseNodeEventListener;
+import com.sverko.ebnf4j.lexer.EbnfTokenTable;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -11,9 +12,18 @@ public class EbnfSymbolTracker implements ParseNodeEventListener {
 
   private final List<String> predefinedNodeNames;
   private final Set<String> definedNames = new HashSet<>();
+  private final EbnfTokenTable tokens;
 
   public EbnfSymbolTracker(List<String> predefinedNodeNames) {
+    this(predefinedNodeNames, null);
+  }
+
+  /**
+   * @param tokens token table of the parsed text; when given, symbols also carry text offsets
+   */
+  public EbnfSymbolTracker(List<String> predefinedNodeNames, EbnfTokenTable tokens) {
     this.predefinedNodeNames = predefinedNodeNames != null ? predefinedNodeNames : List.of();
+    this.tokens = tokens;
 
     // Seed predefined names as "defined"
     definedNames.addAll(this.predefinedNodeNames);
@@ -23,6 +33,8 @@ public class EbnfSymbolTracker implements ParseNodeEventListener {
     public final String name;
     public final int startTokenIndex;
     public final int endTokenIndex;
+    public final int startOffset;
+    public final int endOffset;
     public final SymbolType type;
 
     public enum SymbolType {
@@ -30,9 +42,15 @@ public class EbnfSymbolTracker implements ParseNodeEventListener {
     }
 
     public SymbolInfo(String name, int startTokenIndex, int endTokenIndex, SymbolType type) {
+      this(name, startTokenIndex, endTokenIndex, -1, -1, type);
+    }
+
+    public SymbolInfo(String name, int startTokenIndex, int endTokenIndex, int startOffset, int endOffset, SymbolType type) {
       this.name = name;
       this.startTokenIndex = startTokenIndex;
       this.endTokenIndex = endTokenIndex;
+      this.startOffset = startOffset;
+      this.endOffset = endOffset;
       this.type = type;
     }
   }
@@ -48,10 +66,10 @@ public class EbnfSymbolTracker implements ParseNodeEventListener {
       case "meta identifier":
         if (!afterDefiningSymbol) {
           String name = e.getTrimmed();
-          definitions.add(new SymbolInfo(name, e.getTrimmedFromPtr(), e.getTrimmedToPtr(), SymbolInfo.SymbolType.DEFINITION));
+          definitions.add(symbol(name, e.getTrimmedFromPtr(), e.getTrimmedToPtr(), SymbolInfo.SymbolType.DEFINITION));
           definedNames.add(name);
         } else {
-          references.add(new SymbolInfo(e.getTrimmed(), e.getTrimmedFromPtr(), e.getTrimmedToPtr(), SymbolInfo.SymbolType.REFERENCE));
+          references.add(symbol(e.getTrimmed(), e.getTrimmedFromPtr(), e.getTrimmedToPtr(), SymbolInfo.SymbolType.REFERENCE));
         }
         break;
 
@@ -65,6 +83,18 @@ public class EbnfSymbolTracker implements ParseNodeEventListener {
     }
   }
 
+  private SymbolInfo symbol(String name, int fromPtr, int toPtr, SymbolInfo.SymbolType type) {
+    if (tokens == null) {
+      return new SymbolInfo(name, fromPtr, toPtr, type);
+    }
+    int s = Math.max(0, fromPtr);
+    int e = Math.min(tokens.size(), Math.max(s, toPtr)); // exklusiv
+    if (s >= e) {
+      return new SymbolInfo(name, fromPtr, toPtr, type);
+    }
+    return new SymbolInfo(name, fromPtr, toPtr, tokens.getStart(s), tokens.getEnd(e - 1), type);
+  }
+
   public List<SymbolInfo> getDefinitions() { return definitions; }
   public List<SymbolInfo> getReferences() { return references; }
 
@@ -2,12 +2,21 @@ package com.sverko.ebnf4j.completion;
 
 import com.intellij.codeInsight.completion.*;
 import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.patterns.PlatformPatterns;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
 import com.intellij.util.ProcessingContext;
-import com.sverko.ebnf.ParseNode;
 import com.sverko.ebnf4j.EbnfLanguage;
+import com.sverko.ebnf4j.annotator.EbnfCancellation;
+import com.sverko.ebnf4j.annotator.EbnfRuleAnalysis;
+import com.sverko.ebnf4j.index.EbnfSymbolIndex;
 import com.sverko.ebnf4j.lexer.EbnfTokenTypes;
+import com.sverko.ebnf4j.model.EbnfGrammarModel;
+import com.sverko.ebnf4j.model.EbnfGrammarModelService;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.HashSet;
@@ -16,6 +25,8 @@ import java.util.Set;
 
 public class EbnfCompletionContributor extends CompletionContributor implements EbnfTokenTypes {
 
+  private static final Logger LOG = Logger.getInstance(EbnfCompletionContributor.class);
+
   public EbnfCompletionContributor() {
         // Simplified pattern - trigger on any IDENTIFIER token
         extend(CompletionType.BASIC,
@@ -26,59 +37,30 @@ public class EbnfCompletionContributor extends CompletionContributor implements
                     protected void addCompletions(@NotNull CompletionParameters parameters,
                                                   @NotNull ProcessingContext context,
                                                   @NotNull CompletionResultSet result) {
-                        
-                        System.out.println("DEBUG: EbnfCompletionContributor triggered!");
-                        
                         PsiElement position = parameters.getPosition();
-                        System.out.println("DEBUG: Position element: " + position.getText());
-                        System.out.println("DEBUG: Position type: " + position.getNode().getElementType());
-                        
                         if (shouldProvideCompletion(position)) {
-                            System.out.println("DEBUG: Should provide completion = true");
-                            addDefinitionCompletions(position, result);
-                        } else {
-                            System.out.println("DEBUG: Should provide completion = false");
+                            addDefinitionCompletions(position, parameters.getOriginalFile(), result);
                         }
                     }
                 });
     }
 
     private boolean shouldProvideCompletion(PsiElement position) {
-        // Debug: Always provide completion for now to test
-        System.out.println("DEBUG: Checking if should provide completion...");
-        
-        // Get text before cursor to see context
-        String textBeforeCursor = getTextBeforeCursor(position);
-        System.out.println("DEBUG: Text before cursor: '" + textBeforeCursor + "'");
-        
         // For now, always provide completion if we're typing an identifier
         // Later we can refine this to check for semicolon context
-        return true; // Temporarily always true for debugging
-    }
-    
-    private String getTextBeforeCursor(PsiElement position) {
-        String fileText = position.getContainingFile().getText();
-        int cursorOffset = position.getTextOffset();
-        
-        // Get last 50 characters before cursor for context
-        int start = Math.max(0, cursorOffset - 50);
-        return fileText.substring(start, cursorOffset);
+        return true;
     }
 
-    private void addDefinitionCompletions(PsiElement position, CompletionResultSet result) {
-        System.out.println("DEBUG: Adding definition completions...");
-        
+    private void addDefinitionCompletions(PsiElement position, PsiFile originalFile, CompletionResultSet result) {
         // Extract the actual prefix (remove IntelliJ's dummy text)
         String elementText = position.getText();
         String actualPrefix = elementText.replace("IntellijIdeaRulezzz", "");
-        System.out.println("DEBUG: Actual prefix: '" + actualPrefix + "'");
         
         // Create a result set with the correct prefix matcher
         CompletionResultSet prefixedResult = result.withPrefixMatcher(actualPrefix);
         
-        // Get all existing definitions from the file
-        Set<String> existingDefinitions = collectExistingDefinitions(position);
-        System.out.println("DEBUG: Found " + existingDefinitions.size() + " existing definitions: " + existingDefinitions);
+        // Get all meta identifiers of the file - defined rules and referenced names
+        Set<String> existingDefinitions = collectExistingDefinitions(originalFile);
         
         // Add all existing definitions as completion suggestions
         for (String definition : existingDefinitions) {
@@ -89,41 +71,39 @@ public class EbnfCompletionContributor extends CompletionContributor implements
                         .withIcon(null)); // You can add an icon later
             }
         }
+
+        // Definitions from the other grammar files of the project are index reads
+        VirtualFile currentFile = originalFile.getVirtualFile();
+        Map<String, VirtualFile> projectDefinitions = EbnfSymbolIndex.findDefinitions(position.getProject(),
+                name -> !existingDefinitions.contains(name) && prefixedResult.getPrefixMatcher().prefixMatches(name));
+        for (Map.Entry<String, VirtualFile> entry : projectDefinitions.entrySet()) {
+            if (entry.getValue().equals(currentFile)) continue;
+            prefixedResult.addElement(LookupElementBuilder.create(entry.getKey())
+                    .withTypeText(entry.getValue().getName()));
+        }
     }
 
-    private Set<String> collectExistingDefinitions(PsiElement position) {
+    private Set<String> collectExistingDefinitions(PsiFile originalFile) {
         try {
-            String fileText = position.getContainingFile().getText();
-            
-            // Create our simple definition collector
-            CompletionDefinitionCollector definitionCollector = new CompletionDefinitionCollector();
-            
-            // Use the hardcoded EBNF schema parser
-            ParseNode ebnfSchemaStartNode = com.sverko.ebnf.EbnfParseTree.getStartNode();
-            Map<String, ParseNode> ebnfNodeMap = com.sverko.ebnf.EbnfParseTree.getNodeMap();
-            
-            com.sverko.ebnf.Parser schemaParser = new com.sverko.ebnf.Parser(
-                ebnfSchemaStartNode, 
-                ebnfNodeMap, 
-                Set.of(), 
-                true
-            );
-            
-            // Add our simple collector as event listener - only need these 3 events
-            schemaParser.assignNodeEventListeners(definitionCollector, 
-                "meta identifier",
-                "defining symbol", 
-                "terminator symbol"
-            );
-            
-            schemaParser.parse(fileText);
-            
-            Set<String> definitions = definitionCollector.getDefinitionNames();
-            System.out.println("DEBUG: Collected definitions: " + definitions);
-            return definitions;
-            
+            Document document = originalFile.getViewProvider().getDocument();
+            if (document == null) return new HashSet<>();
+
+            // Shared grammar model of the original file - parsed at most once per edit
+            long stamp = document.getModificationStamp();
+            EbnfGrammarModel model = EbnfGrammarModelService.getInstance(originalFile.getProject())
+                .getModel(document, document.getImmutableCharSequence(), stamp, EbnfCancellation.forDocument(document, stamp));
+
+            // Like the schema parser's meta identifiers: referenced but undefined names as well
+            Set<String> names = new HashSet<>(model.getDefinitionNames());
+            for (EbnfRuleAnalysis.Symbol ref : model.getReferences()) {
+                names.add(ref.name);
+            }
+            return names;
+
+        } catch (ProcessCanceledException e) {
+            throw e;
         } catch (Exception e) {
-            System.err.println("DEBUG: Error collecting definitions: " + e.getMessage());
+            LOG.warn("Error collecting definitions", e);
             return new HashSet<>();
         }
     }
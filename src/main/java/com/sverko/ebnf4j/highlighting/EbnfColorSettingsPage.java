@@ -22,9 +22,16 @@ public class EbnfColorSettingsPage implements ColorSettingsPage {
       new AttributesDescriptor("Brackets [ ]", EbnfSyntaxHighlighter.BRACKETS_KEY),
       new AttributesDescriptor("Parentheses ( )", EbnfSyntaxHighlighter.PARENTHESES_KEY),
       new AttributesDescriptor("Comma / Semicolon", EbnfSyntaxHighlighter.COMMA_KEY),
-      new AttributesDescriptor("Bad character", EbnfSyntaxHighlighter.BAD_CHAR_KEY)
+      new AttributesDescriptor("Comment (* *)", EbnfSyntaxHighlighter.COMMENT_KEY),
+      new AttributesDescriptor("Bad character", EbnfSyntaxHighlighter.BAD_CHAR_KEY),
+      new AttributesDescriptor("Rule definition", EbnfSyntaxHighlighter.DEFINITION_KEY),
+      new AttributesDescriptor("Rule reference", EbnfSyntaxHighlighter.REFERENCE_KEY)
   };
 
+  private static final Map<String, TextAttributesKey> TAGS = Map.of(
+      "def", EbnfSyntaxHighlighter.DEFINITION_KEY,
+      "ref", EbnfSyntaxHighlighter.REFERENCE_KEY);
+
   @Override
   public @Nullable Icon getIcon() {
     return null;
@@ -38,20 +45,21 @@ public class EbnfColorSettingsPage implements ColorSettingsPage {
   @Override
   public @NotNull String getDemoText() {
     return """
-        OUTPUT = {KENNZEICHEN | NICHT_KENNZEICHEN};
-        KENNZEICHEN = STADT_KUERZEL, "-", ERKENNUNGS_NUMMER, ZAHLEN;
-        NICHT_KENNZEICHEN = ?BMP? - KENNZEICHEN;
-        STADT_KUERZEL = BUCHSTABE, 2*[BUCHSTABE];
-        ERKENNUNGS_NUMMER = BUCHSTABE, 2*[BUCHSTABE];
-        BUCHSTABE = ?GERMAN_CAPITALS?;
-        ZAHLEN = ZAHL, 3*[ZAHL];
-        ZAHL = ?DIGIT?;
+        (* Kfz-Kennzeichen *)
+        <def>OUTPUT</def> = {<ref>KENNZEICHEN</ref> | <ref>NICHT_KENNZEICHEN</ref>};
+        <def>KENNZEICHEN</def> = <ref>STADT_KUERZEL</ref>, "-", <ref>ERKENNUNGS_NUMMER</ref>, <ref>ZAHLEN</ref>;
+        <def>NICHT_KENNZEICHEN</def> = ?BMP? - <ref>KENNZEICHEN</ref>;
+        <def>STADT_KUERZEL</def> = <ref>BUCHSTABE</ref>, 2*[<ref>BUCHSTABE</ref>];
+        <def>ERKENNUNGS_NUMMER</def> = <ref>BUCHSTABE</ref>, 2*[<ref>BUCHSTABE</ref>];
+        <def>BUCHSTABE</def> = ?GERMAN_CAPITALS?;
+        <def>ZAHLEN</def> = <ref>ZAHL</ref>, 3*[<ref>ZAHL</ref>];
+        <def>ZAHL</def> = ?DIGIT?;
         """;
   }
 
   @Override
   public @Nullable Map<String, TextAttributesKey> getAdditionalHighlightingTagToDescriptorMap() {
-    return null;
+    return TAGS;
   }
 
   @Override
@@ -60,6 +60,18 @@ public class EbnfSyntaxHighlighter extends SyntaxHighlighterBase implements Ebnf
       TextAttributesKey.createTextAttributesKey("EBNF_COMMA",
           new TextAttributes(new Color(0xF87220), null, null, null, Font.PLAIN));
 
+  public static final TextAttributesKey COMMENT_KEY =
+      TextAttributesKey.createTextAttributesKey("EBNF_COMMENT", DefaultLanguageHighlighterColors.BLOCK_COMMENT);
+
+  // Semantic colours, applied by EbnfExternalAnnotator rather than by the lexer
+  public static final TextAttributesKey DEFINITION_KEY =
+      TextAttributesKey.createTextAttributesKey("EBNF_DEFINITION",
+          new TextAttributes(new Color(0xAA78E3), null, null, null, Font.BOLD));
+
+  public static final TextAttributesKey REFERENCE_KEY =
+      TextAttributesKey.createTextAttributesKey("EBNF_REFERENCE",
+          new TextAttributes(new Color(0xC792EA), null, null, null, Font.PLAIN));
+
   public static final TextAttributesKey BAD_CHAR_KEY =
       TextAttributesKey.createTextAttributesKey("EBNF_BAD_CHAR",
           new TextAttributes(new Color(0xFF0000), null, null, null, Font.PLAIN));
@@ -82,6 +94,7 @@ public class EbnfSyntaxHighlighter extends SyntaxHighlighterBase implements Ebnf
     KEYS.put(R_PAREN, PARENTHESES_KEY);
     KEYS.put(COMMA, COMMA_KEY);
     KEYS.put(SEMICOLON, COMMA_KEY);
+    KEYS.put(COMMENT, COMMENT_KEY);
     KEYS.put(BAD_CHAR, BAD_CHAR_KEY);
     KEYS.put(TokenType.BAD_CHARACTER, BAD_CHAR_KEY);
   }
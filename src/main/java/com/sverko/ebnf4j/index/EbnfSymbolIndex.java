@@ -0,0 +1,130 @@
+package com.sverko.ebnf4j.index;
+
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.sverko.ebnf4j.EbnfFileType;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Project-wide index of rule names: name -> definition and reference offsets per .ebnf file.
+ * Filled by {@link EbnfSymbolScanner}, so indexing never runs the schema parser.
+ */
+public class EbnfSymbolIndex extends FileBasedIndexExtension<String, EbnfSymbolOccurrences> {
+
+  public static final ID<String, EbnfSymbolOccurrences> NAME = ID.create("com.sverko.ebnf4j.symbols");
+
+  private static final DataExternalizer<EbnfSymbolOccurrences> EXTERNALIZER = new DataExternalizer<>() {
+    @Override
+    public void save(@NotNull DataOutput out, EbnfSymbolOccurrences value) throws IOException {
+      writeOffsets(out, value.getDefinitionOffsets());
+      writeOffsets(out, value.getReferenceOffsets());
+    }
+
+    @Override
+    public EbnfSymbolOccurrences read(@NotNull DataInput in) throws IOException {
+      return new EbnfSymbolOccurrences(readOffsets(in), readOffsets(in));
+    }
+  };
+
+  @Override
+  public @NotNull ID<String, EbnfSymbolOccurrences> getName() {
+    return NAME;
+  }
+
+  @Override
+  public @NotNull DataIndexer<String, EbnfSymbolOccurrences, FileContent> getIndexer() {
+    return content -> EbnfSymbolScanner.scan(content.getContentAsText());
+  }
+
+  @Override
+  public @NotNull KeyDescriptor<String> getKeyDescriptor() {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @Override
+  public @NotNull DataExternalizer<EbnfSymbolOccurrences> getValueExternalizer() {
+    return EXTERNALIZER;
+  }
+
+  @Override
+  public int getVersion() {
+    // 2: comments are lexed as COMMENT tokens
+    return 2;
+  }
+
+  @Override
+  public FileBasedIndex.@NotNull InputFilter getInputFilter() {
+    return new DefaultFileTypeSpecificInputFilter(EbnfFileType.INSTANCE);
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  /**
+   * Rule names accepted by {@code nameFilter} that are defined somewhere in the project, with one
+   * defining file each. Empty while indexes are being built. Requires a read action.
+   */
+  public static Map<String, VirtualFile> findDefinitions(@NotNull Project project, @NotNull Predicate<String> nameFilter) {
+    Map<String, VirtualFile> result = new HashMap<>();
+    if (DumbService.isDumb(project)) return result;
+
+    FileBasedIndex index = FileBasedIndex.getInstance();
+    GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+    // Filter while walking the keys, values are only read for the names that pass
+    List<String> names = new ArrayList<>();
+    index.processAllKeys(NAME, name -> {
+      if (nameFilter.test(name)) names.add(name);
+      return true;
+    }, scope, null);
+    for (String name : names) {
+      index.processValues(NAME, name, null, (file, occurrences) -> {
+        if (!occurrences.isDefined()) return true;
+        result.put(name, file);
+        return false;
+      }, scope);
+    }
+    return result;
+  }
+
+  private static void writeOffsets(DataOutput out, int[] offsets) throws IOException {
+    DataInputOutputUtil.writeINT(out, offsets.length);
+    int previous = 0;
+    for (int offset : offsets) {
+      // Offsets are ascending, deltas keep the records small
+      DataInputOutputUtil.writeINT(out, offset - previous);
+      previous = offset;
+    }
+  }
+
+  private static int[] readOffsets(DataInput in) throws IOException {
+    int[] offsets = new int[DataInputOutputUtil.readINT(in)];
+    int previous = 0;
+    for (int i = 0; i < offsets.length; i++) {
+      previous += DataInputOutputUtil.readINT(in);
+      offsets[i] = previous;
+    }
+    return offsets;
+  }
+}
@@ -0,0 +1,57 @@
+package com.sverko.ebnf4j.index;
+
+import java.util.Arrays;
+
+/**
+ * Offsets of the definitions and references of one rule name within one file.
+ */
+public final class EbnfSymbolOccurrences {
+
+  private final int[] definitionOffsets;
+  private final int[] referenceOffsets;
+
+  public EbnfSymbolOccurrences(int[] definitionOffsets, int[] referenceOffsets) {
+    this.definitionOffsets = definitionOffsets;
+    this.referenceOffsets = referenceOffsets;
+  }
+
+  public int[] getDefinitionOffsets() { return definitionOffsets; }
+  public int[] getReferenceOffsets() { return referenceOffsets; }
+  public boolean isDefined() { return definitionOffsets.length > 0; }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof EbnfSymbolOccurrences)) return false;
+    EbnfSymbolOccurrences that = (EbnfSymbolOccurrences) o;
+    return Arrays.equals(definitionOffsets, that.definitionOffsets)
+        && Arrays.equals(referenceOffsets, that.referenceOffsets);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(definitionOffsets) + Arrays.hashCode(referenceOffsets);
+  }
+
+  static final class Builder {
+    private int[] definitions = new int[1];
+    private int definitionCount;
+    private int[] references = new int[4];
+    private int referenceCount;
+
+    void addDefinition(int offset) {
+      if (definitionCount == definitions.length) definitions = Arrays.copyOf(definitions, definitionCount * 2);
+      definitions[definitionCount++] = offset;
+    }
+
+    void addReference(int offset) {
+      if (referenceCount == references.length) references = Arrays.copyOf(references, referenceCount * 2);
+      references[referenceCount++] = offset;
+    }
+
+    EbnfSymbolOccurrences build() {
+      return new EbnfSymbolOccurrences(
+          Arrays.copyOf(definitions, definitionCount), Arrays.copyOf(references, referenceCount));
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.sverko.ebnf4j.index;
+
+import com.intellij.psi.tree.IElementType;
+import com.sverko.ebnf4j.lexer.EbnfLexer;
+import com.sverko.ebnf4j.lexer.EbnfTokenTypes;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds rule definitions and references with the highlighting lexer only - no schema parse.
+ * Names in front of {@code =} are definitions, names between {@code =} and {@code ;} references.
+ * Multi-word meta identifiers are joined with single spaces. Comments are tokens of their own,
+ * so names inside them are skipped and a comment ends a multi-word name.
+ */
+public final class EbnfSymbolScanner {
+
+  private EbnfSymbolScanner() {
+  }
+
+  public static Map<String, EbnfSymbolOccurrences> scan(CharSequence text) {
+    Map<String, EbnfSymbolOccurrences.Builder> builders = new HashMap<>();
+    EbnfLexer lexer = new EbnfLexer();
+    lexer.start(text, 0, text.length(), 0);
+
+    boolean inDefinition = true;
+    IElementType type = lexer.getTokenType();
+    while (type != null) {
+      if (type == EbnfTokenTypes.IDENTIFIER) {
+        int start = lexer.getTokenStart();
+        StringBuilder name = new StringBuilder();
+        name.append(text, start, lexer.getTokenEnd());
+        lexer.advance();
+        // Collect the following words of the same name
+        while ((type = lexer.getTokenType()) == EbnfTokenTypes.WHITESPACE || type == EbnfTokenTypes.IDENTIFIER) {
+          if (type == EbnfTokenTypes.IDENTIFIER) {
+            name.append(' ').append(text, lexer.getTokenStart(), lexer.getTokenEnd());
+          }
+          lexer.advance();
+        }
+        EbnfSymbolOccurrences.Builder builder =
+            builders.computeIfAbsent(name.toString(), n -> new EbnfSymbolOccurrences.Builder());
+        if (inDefinition) builder.addDefinition(start);
+        else builder.addReference(start);
+        continue;
+      }
+      if (type == EbnfTokenTypes.ASSIGN) {
+        inDefinition = false;
+      } else if (type == EbnfTokenTypes.SEMICOLON) {
+        inDefinition = true;
+      }
+      lexer.advance();
+      type = lexer.getTokenType();
+    }
+
+    Map<String, EbnfSymbolOccurrences> result = new HashMap<>(builders.size() * 2);
+    builders.forEach((name, builder) -> result.put(name, builder.build()));
+    return result;
+  }
+}
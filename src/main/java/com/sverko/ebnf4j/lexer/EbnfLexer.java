@@ -1,18 +1,63 @@
 package com.sverko.ebnf4j.lexer;
 
 import com.intellij.lexer.LexerBase;
-import com.intellij.psi.TokenType;
 import com.intellij.psi.tree.IElementType;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+/**
+ * Highlighting lexer. ASCII characters are classified through a 128-entry table; only
+ * non-ASCII characters go through {@link Character}. The buffer is read through
+ * {@code charAt}: the editor hands the lexer an {@code ImmutableText} and the indexer a
+ * {@code String}, neither of which exposes a char array.
+ * <p>
+ * No token looks past the end of its line: strings and {@code ?...?} sequences end at the line
+ * end at the latest, and {@code (* ... *)} comments are split into one token per line, with
+ * {@link #IN_COMMENT} as the state of the continuation tokens. Every line start outside a
+ * comment is therefore in the initial state, so the editor can restart lexing right in front of
+ * an edit and only relexes up to the next line where the states agree again.
+ */
 public class EbnfLexer extends LexerBase implements EbnfTokenTypes {
+
+  public static final int INITIAL = 0;
+  /** Inside a {@code (* ... *)} comment that started on an earlier line. */
+  public static final int IN_COMMENT = 1;
+
+  private static final byte OTHER = 0;
+  private static final byte SPACE = 1;
+  private static final byte DIGIT = 2;
+  private static final byte LETTER = 3;   // letters and '_'
+
+  private static final byte[] CLASSES = new byte[128];
+  /** Token type of the characters that always form a token of their own, else {@code null}. */
+  private static final IElementType[] SINGLE_CHAR_TOKENS = new IElementType[128];
+
+  static {
+    for (char c = 0; c < 128; c++) {
+      if (Character.isWhitespace(c)) CLASSES[c] = SPACE;
+      else if (Character.isDigit(c)) CLASSES[c] = DIGIT;
+      else if (Character.isLetter(c) || c == '_') CLASSES[c] = LETTER;
+    }
+    SINGLE_CHAR_TOKENS['='] = ASSIGN;
+    SINGLE_CHAR_TOKENS[','] = COMMA;
+    SINGLE_CHAR_TOKENS['|'] = PIPE;
+    SINGLE_CHAR_TOKENS[';'] = SEMICOLON;
+    SINGLE_CHAR_TOKENS['-'] = MINUS;
+    SINGLE_CHAR_TOKENS['*'] = STAR;
+    SINGLE_CHAR_TOKENS['}'] = R_BRACE;
+    SINGLE_CHAR_TOKENS['['] = L_BRACKET;
+    SINGLE_CHAR_TOKENS[']'] = R_BRACKET;
+    SINGLE_CHAR_TOKENS[')'] = R_PAREN;
+  }
+
   private CharSequence buffer;
   private int endOffset;
   private int tokenStart;
   private int tokenEnd;
   private IElementType tokenType;
+  // State at the start of the current token, and behind it
   private int state;
+  private int nextState;
 
   @Override
   public void start(@NotNull CharSequence buffer, int startOffset, int endOffset, int initialState) {
@@ -21,7 +66,7 @@ public class EbnfLexer extends LexerBase implements EbnfTokenTypes {
     this.tokenStart = startOffset;
     this.tokenEnd = startOffset;
     this.tokenType = null;
-    this.state = initialState;
+    this.nextState = initialState;
     advance();
   }
 
@@ -45,51 +90,83 @@ public class EbnfLexer extends LexerBase implements EbnfTokenTypes {
     return tokenEnd;
   }
 
+  private static int classOf(char c) {
+    if (c < 128) return CLASSES[c];
+    if (Character.isWhitespace(c)) return SPACE;
+    if (Character.isDigit(c)) return DIGIT;
+    return Character.isLetter(c) ? LETTER : OTHER;
+  }
+
   @Override
   public void advance() {
+    state = nextState;
     if (tokenEnd >= endOffset) {
       tokenType = null;
       return;
     }
 
     tokenStart = tokenEnd;
+    if (state == IN_COMMENT) {
+      scanComment(tokenStart);
+      return;
+    }
     char c = buffer.charAt(tokenStart);
 
-    // Whitespace
-    if (Character.isWhitespace(c)) {
-      int i = tokenStart + 1;
-      while (i < endOffset && Character.isWhitespace(buffer.charAt(i))) i++;
-      tokenEnd = i;
-      tokenType = WHITESPACE;
+    if (c < 128 && SINGLE_CHAR_TOKENS[c] != null) {
+      tokenEnd = tokenStart + 1;
+      tokenType = SINGLE_CHAR_TOKENS[c];
       return;
     }
 
-    // Meta identifiers like \n, \t, \s should behave like IDENTIFIER tokens
-    if (c == '\\') {
-      if (tokenStart + 1 < endOffset) {
-        char next = buffer.charAt(tokenStart + 1);
-
-        // Keep this list in sync with predefined schema meta identifiers
-        if (next == 'n' || next == 't' || next == 's') {
-          tokenEnd = tokenStart + 2;
-          tokenType = IDENTIFIER;
-          return;
+    switch (classOf(c)) {
+      case SPACE: {
+        int i = tokenStart + 1;
+        while (i < endOffset && classOf(buffer.charAt(i)) == SPACE) i++;
+        tokenEnd = i;
+        tokenType = WHITESPACE;
+        return;
+      }
+      case DIGIT: {
+        // Number
+        int i = tokenStart + 1;
+        while (i < endOffset && classOf(buffer.charAt(i)) == DIGIT) i++;
+        tokenEnd = i;
+        tokenType = NUMBER;
+        return;
+      }
+      case LETTER: {
+        // Identifier: letters, digits and '_'
+        int i = tokenStart + 1;
+        while (i < endOffset) {
+          int cls = classOf(buffer.charAt(i));
+          if (cls != LETTER && cls != DIGIT) break;
+          i++;
         }
+        tokenEnd = i;
+        tokenType = IDENTIFIER;
+        return;
       }
-      // Standalone '\' is invalid in this language
-      tokenEnd = tokenStart + 1;
-      tokenType = BAD_CHAR;
-      return;
+      default:
+        break;
     }
 
-    // Operators / delimiters
     switch (c) {
-      case '=': tokenEnd = tokenStart + 1; tokenType = ASSIGN; return;
-      case ',': tokenEnd = tokenStart + 1; tokenType = COMMA; return;
-      case '|': tokenEnd = tokenStart + 1; tokenType = PIPE; return;
-      case ';': tokenEnd = tokenStart + 1; tokenType = SEMICOLON; return;
-      case '-': tokenEnd = tokenStart + 1; tokenType = MINUS; return;
-      case '*': tokenEnd = tokenStart + 1; tokenType = STAR; return;
+      // Meta identifiers like \n, \t, \s should behave like IDENTIFIER tokens
+      case '\\':
+        if (tokenStart + 1 < endOffset) {
+          char next = buffer.charAt(tokenStart + 1);
+
+          // Keep this list in sync with predefined schema meta identifiers
+          if (next == 'n' || next == 't' || next == 's') {
+            tokenEnd = tokenStart + 2;
+            tokenType = IDENTIFIER;
+            return;
+          }
+        }
+        // Standalone '\' is invalid in this language
+        tokenEnd = tokenStart + 1;
+        tokenType = BAD_CHAR;
+        return;
       case '{':
         if (tokenStart + 1 < endOffset && buffer.charAt(tokenStart + 1) == ':') {
           tokenEnd = tokenStart + 2;
@@ -99,72 +176,78 @@ public class EbnfLexer extends LexerBase implements EbnfTokenTypes {
         tokenEnd = tokenStart + 1;
         tokenType = L_BRACE;
         return;
-      case '}': tokenEnd = tokenStart + 1; tokenType = R_BRACE; return;
-      case '[': tokenEnd = tokenStart + 1; tokenType = L_BRACKET; return;
-      case ']': tokenEnd = tokenStart + 1; tokenType = R_BRACKET; return;
-      case '(': tokenEnd = tokenStart + 1; tokenType = L_PAREN; return;
-      case ')': tokenEnd = tokenStart + 1; tokenType = R_PAREN; return;
-      case '"': {
-        scanQuotedString('"');
+      case '(':
+        if (tokenStart + 1 < endOffset && buffer.charAt(tokenStart + 1) == '*') {
+          scanComment(tokenStart + 2);
+          return;
+        }
+        tokenEnd = tokenStart + 1;
+        tokenType = L_PAREN;
         return;
-      }
-      case '\'': {
-        scanQuotedString('\'');
+      case '"':
+      case '\'':
+        scanQuotedString(c);
         return;
-      }
-      case '?':
-        // ?...?-style char class
-        int i = tokenStart + 1;
-        while (i < endOffset && buffer.charAt(i) != '?') i++;
+      case '?': {
+        // ?...?-style char class, closed on the same line
+        int i = findInLine('?', tokenStart + 1);
         if (i < endOffset && buffer.charAt(i) == '?') {
           tokenEnd = i + 1;
           tokenType = CHAR_CLASS;
           return;
         }
         // Unclosed ?... treat as bad
-        tokenEnd = Math.min(tokenStart + 1, endOffset);
+        tokenEnd = tokenStart + 1;
         tokenType = BAD_CHAR;
         return;
+      }
       default:
-        // Identifier (A-Z_ and digits), or number
-        if (Character.isDigit(c)) {
-          int j = tokenStart + 1;
-          while (j < endOffset && Character.isDigit(buffer.charAt(j))) j++;
-          tokenEnd = j;
-          tokenType = NUMBER;
-          return;
-        }
-        if (Character.isLetter(c) || c == '_') {
-          int j = tokenStart + 1;
-          while (j < endOffset) {
-            char cj = buffer.charAt(j);
-            if (Character.isLetterOrDigit(cj) || cj == '_') j++;
-            else break;
-          }
-          tokenEnd = j;
-          tokenType = IDENTIFIER;
-          return;
-        }
         tokenEnd = tokenStart + 1;
         tokenType = BAD_CHAR;
     }
   }
 
+  /** First {@code ch} or line end in {@code [from, endOffset)}; {@code endOffset} if there is neither. */
+  private int findInLine(char ch, int from) {
+    for (int i = from; i < endOffset; i++) {
+      char c = buffer.charAt(i);
+      if (c == ch || c == '\n') return i;
+    }
+    return endOffset;
+  }
+
   private void scanQuotedString(char quote) {
-    int i = tokenStart + 1;
-    boolean closed = false;
-    while (i < endOffset) {
-      char ch = buffer.charAt(i);
-      // stop only at the matching quote; the opposite quote is part of the content
-      if (ch == quote) {
-        i++;
-        closed = true;
-        break;
+    // stop only at the matching quote; the opposite quote is part of the content
+    int close = findInLine(quote, tokenStart + 1);
+    boolean closed = close < endOffset && buffer.charAt(close) == quote;
+    // An unterminated string only takes the rest of its line
+    tokenEnd = closed ? close + 1 : close;
+    tokenType = closed ? STRING : BAD_CHAR;  // Use BAD_CHAR consistently instead of TokenType.BAD_CHARACTER
+  }
+
+  /** Comment text from {@code from} up to the closing {@code *)} or, if that is not on this line, the line end. */
+  private void scanComment(int from) {
+    tokenType = COMMENT;
+    int i = from;
+    while (true) {
+      i = findInLine('*', i);
+      if (i >= endOffset) {
+        tokenEnd = endOffset;
+        nextState = IN_COMMENT;
+        return;
+      }
+      if (buffer.charAt(i) == '\n') {
+        tokenEnd = i + 1;
+        nextState = IN_COMMENT;
+        return;
+      }
+      if (i + 1 < endOffset && buffer.charAt(i + 1) == ')') {
+        tokenEnd = i + 2;
+        nextState = INITIAL;
+        return;
       }
       i++;
     }
-    tokenEnd = i;
-    tokenType = closed ? STRING : BAD_CHAR;  // Use BAD_CHAR consistently instead of TokenType.BAD_CHARACTER
   }
 
   @Override
@@ -176,4 +259,4 @@ public class EbnfLexer extends LexerBase implements EbnfTokenTypes {
   public int getBufferEnd() {
     return endOffset;
   }
-}
\ No newline at end of file
+}
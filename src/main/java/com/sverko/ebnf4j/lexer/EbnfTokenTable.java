@@ -0,0 +1,152 @@
+package com.sverko.ebnf4j.lexer;
+
+import com.intellij.psi.tree.IElementType;
+import com.sverko.ebnf.TokenQueue;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, primitive view of one lexer run: token kind, start offset, length and an interned
+ * text id per token. Built once per lex and shared by the analysis passes, so they compare ints
+ * instead of token strings.
+ */
+public final class EbnfTokenTable {
+
+  public static final int OTHER = 0;
+  public static final int IDENTIFIER = 1;
+  public static final int STRING = 2;
+  public static final int NUMBER = 3;
+  public static final int CHAR_CLASS = 4;
+  public static final int ASSIGN = 5;
+  public static final int COMMA = 6;
+  public static final int PIPE = 7;
+  public static final int SEMICOLON = 8;
+  public static final int MINUS = 9;
+  public static final int STAR = 10;
+  public static final int L_BRACE = 11;
+  public static final int R_BRACE = 12;
+  public static final int COL_BRACE = 13;
+  public static final int L_BRACKET = 14;
+  public static final int R_BRACKET = 15;
+  public static final int L_PAREN = 16;
+  public static final int R_PAREN = 17;
+  public static final int WHITESPACE = 18;
+
+  private static final IElementType[] ELEMENT_TYPES = {
+      EbnfTokenTypes.BAD_CHAR, EbnfTokenTypes.IDENTIFIER, EbnfTokenTypes.STRING, EbnfTokenTypes.NUMBER,
+      EbnfTokenTypes.CHAR_CLASS, EbnfTokenTypes.ASSIGN, EbnfTokenTypes.COMMA, EbnfTokenTypes.PIPE,
+      EbnfTokenTypes.SEMICOLON, EbnfTokenTypes.MINUS, EbnfTokenTypes.STAR, EbnfTokenTypes.L_BRACE,
+      EbnfTokenTypes.R_BRACE, EbnfTokenTypes.COL_BRACE, EbnfTokenTypes.L_BRACKET, EbnfTokenTypes.R_BRACKET,
+      EbnfTokenTypes.L_PAREN, EbnfTokenTypes.R_PAREN, EbnfTokenTypes.WHITESPACE
+  };
+
+  private final int[] kinds;
+  private final int[] starts;
+  private final int[] lengths;
+  private final int[] ids;
+  private final String[] idTexts;
+  private final Map<String, Integer> idsByText;
+
+  private EbnfTokenTable(int[] kinds, int[] starts, int[] lengths, int[] ids, String[] idTexts,
+                         Map<String, Integer> idsByText) {
+    this.kinds = kinds;
+    this.starts = starts;
+    this.lengths = lengths;
+    this.ids = ids;
+    this.idTexts = idTexts;
+    this.idsByText = idsByText;
+  }
+
+  /**
+   * Builds the table for the tokens of {@code text}. Offsets are cumulative token lengths, the
+   * token queue has to cover the whole text (whitespace included).
+   */
+  public static EbnfTokenTable of(String text, TokenQueue tokenQueue) {
+    List<String> tokens = tokenQueue.getTokens();
+    int n = tokens.size();
+    int[] kinds = new int[n];
+    int[] starts = new int[n];
+    int[] lengths = new int[n];
+    int[] ids = new int[n];
+    Map<String, Integer> idsByText = new HashMap<>();
+    String[] idTexts = new String[Math.max(8, n)];
+
+    int cursor = 0;
+    for (int i = 0; i < n; i++) {
+      String tok = tokens.get(i);
+      if (tok == null) tok = "";
+
+      starts[i] = cursor;
+      lengths[i] = tok.length();
+      cursor += tok.length();
+
+      if (cursor > text.length()) {
+        // safety: clamp
+        starts[i] = Math.min(starts[i], text.length());
+        lengths[i] = Math.max(0, text.length() - starts[i]);
+        cursor = text.length();
+      }
+
+      kinds[i] = classify(tok);
+      Integer id = idsByText.get(tok);
+      if (id == null) {
+        id = idsByText.size();
+        idsByText.put(tok, id);
+        idTexts[id] = tok;
+      }
+      ids[i] = id;
+    }
+    return new EbnfTokenTable(kinds, starts, lengths, ids, idTexts, idsByText);
+  }
+
+  public int size() { return kinds.length; }
+  public int getKind(int index) { return kinds[index]; }
+  public int getStart(int index) { return starts[index]; }
+  public int getLength(int index) { return lengths[index]; }
+  public int getEnd(int index) { return starts[index] + lengths[index]; }
+  public int getId(int index) { return ids[index]; }
+  public String getText(int index) { return idTexts[ids[index]]; }
+  public IElementType getElementType(int index) { return ELEMENT_TYPES[kinds[index]]; }
+
+  /** Interned id of {@code text}, or {@code -1} if no token of this table has that text. */
+  public int idOf(String text) {
+    Integer id = idsByText.get(text);
+    return id != null ? id : -1;
+  }
+
+  static int classify(String tok) {
+    if (tok.isEmpty()) return OTHER;
+    char c = tok.charAt(0);
+    if (tok.length() == 1) {
+      switch (c) {
+        case '=': return ASSIGN;
+        case ',': return COMMA;
+        case '|': return PIPE;
+        case ';': return SEMICOLON;
+        case '-': return MINUS;
+        case '*': return STAR;
+        case '{': return L_BRACE;
+        case '}': return R_BRACE;
+        case '[': return L_BRACKET;
+        case ']': return R_BRACKET;
+        case '(': return L_PAREN;
+        case ')': return R_PAREN;
+        default: break;
+      }
+    } else if (c == '{' && tok.length() == 2 && tok.charAt(1) == ':') {
+      return COL_BRACE;
+    }
+    if (Character.isWhitespace(c)) {
+      for (int i = 1; i < tok.length(); i++) {
+        if (!Character.isWhitespace(tok.charAt(i))) return OTHER;
+      }
+      return WHITESPACE;
+    }
+    if (c == '"' || c == '\'') return STRING;
+    if (c == '?') return CHAR_CLASS;
+    if (Character.isDigit(c)) return NUMBER;
+    if (Character.isLetter(c) || c == '_' || c == '\\') return IDENTIFIER;
+    return OTHER;
+  }
+}
@@ -23,6 +23,7 @@ public interface EbnfTokenTypes {
   IElementType L_PAREN = type("L_PAREN");       // (
   IElementType R_PAREN = type("R_PAREN");       // )
   IElementType WHITESPACE = type("WHITESPACE");
+  IElementType COMMENT = type("COMMENT");       // (* ... *), one token per line
   IElementType BAD_CHAR = type("BAD_CHAR");
 
   static IElementType type(@NonNls String debugName) {
@@ -0,0 +1,172 @@
+package com.sverko.ebnf4j.model;
+
+import com.sverko.ebnf4j.annotator.EbnfCancellation;
+import com.sverko.ebnf4j.annotator.EbnfRuleAnalysis;
+import com.sverko.ebnf4j.annotator.EbnfRuleCache;
+import com.sverko.ebnf4j.lexer.EbnfTokenTable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Immutable view of one grammar document at one modification stamp: per-rule token tables and
+ * parse results, all definitions and references (document offsets) and, built on first use,
+ * the {@link EbnfTestGrammar} generated from it.
+ */
+public final class EbnfGrammarModel {
+
+  private final long stamp;
+  private final String text;
+  private final EbnfRuleCache rules;
+  private final List<EbnfRuleAnalysis.Symbol> definitions;
+  private final List<EbnfRuleAnalysis.Symbol> references;
+  private final Set<String> definedNames;
+
+  private final Object testGrammarLock = new Object();
+  private volatile boolean testGrammarBuilt;
+  private volatile EbnfTestGrammar testGrammar;
+
+  private EbnfGrammarModel(long stamp, String text, EbnfRuleCache rules,
+                           List<EbnfRuleAnalysis.Symbol> definitions,
+                           List<EbnfRuleAnalysis.Symbol> references,
+                           Set<String> definedNames) {
+    this.stamp = stamp;
+    this.text = text;
+    this.rules = rules;
+    this.definitions = definitions;
+    this.references = references;
+    this.definedNames = definedNames;
+  }
+
+  /**
+   * Computes the model of {@code text}, reusing the rule results of {@code previous}.
+   */
+  public static EbnfGrammarModel compute(@Nullable EbnfGrammarModel previous, String text, long stamp,
+                                         EbnfCancellation cancellation) {
+    EbnfRuleCache rules = EbnfRuleCache.update(previous != null ? previous.rules : null, text, cancellation);
+
+    List<EbnfRuleAnalysis.Symbol> definitions = new ArrayList<>();
+    List<EbnfRuleAnalysis.Symbol> references = new ArrayList<>();
+    Set<String> definedNames = new HashSet<>(EbnfRuleAnalysis.getPredefinedNames());
+    for (int r = 0; r < rules.size(); r++) {
+      cancellation.tick();
+      EbnfRuleAnalysis rule = rules.getRule(r);
+      int ruleOffset = rules.getRuleOffset(r);
+      for (EbnfRuleAnalysis.Symbol def : rule.getDefinitions()) {
+        definitions.add(new EbnfRuleAnalysis.Symbol(def.name, ruleOffset + def.startOffset, ruleOffset + def.endOffset));
+        definedNames.add(def.name);
+      }
+      for (EbnfRuleAnalysis.Symbol ref : rule.getReferences()) {
+        references.add(new EbnfRuleAnalysis.Symbol(ref.name, ruleOffset + ref.startOffset, ruleOffset + ref.endOffset));
+      }
+    }
+    return new EbnfGrammarModel(stamp, text, rules,
+        Collections.unmodifiableList(definitions),
+        Collections.unmodifiableList(references),
+        Collections.unmodifiableSet(definedNames));
+  }
+
+  public long getStamp() { return stamp; }
+  public String getText() { return text; }
+  public EbnfRuleCache getRules() { return rules; }
+  public List<EbnfRuleAnalysis.Symbol> getDefinitions() { return definitions; }
+  public List<EbnfRuleAnalysis.Symbol> getReferences() { return references; }
+
+  /** Names defined in this grammar plus the predefined ones ({@code \n}, ...). */
+  public boolean isDefined(String name) {
+    return name != null && definedNames.contains(name);
+  }
+
+  /** Names defined by the rules of this grammar, without the predefined ones. */
+  public Set<String> getDefinitionNames() {
+    Set<String> names = new HashSet<>();
+    for (EbnfRuleAnalysis.Symbol def : definitions) names.add(def.name);
+    return names;
+  }
+
+  /**
+   * Parsers generated from this grammar for testing inputs against it, shared with all models
+   * of the same text through {@link EbnfTestParserCache}; {@code null} if the grammar cannot be
+   * turned into a parser.
+   */
+  public @Nullable EbnfTestGrammar getTestGrammar() {
+    if (testGrammarBuilt) return testGrammar;
+    synchronized (testGrammarLock) {
+      if (!testGrammarBuilt) {
+        // The schema parser does not know comments
+        testGrammar = EbnfTestParserCache.getInstance()
+            .get(EbnfRuleCache.blankComments(text), getDefinitionNames(), getItemTerminators());
+        testGrammarBuilt = true;
+      }
+      return testGrammar;
+    }
+  }
+
+  /**
+   * Names of the rules that the start rule repeats, if the start rule has the form
+   * {@code start = { a | b | ... };}. Inputs of such grammars are a plain sequence of items, so
+   * parsing can restart at any item boundary. {@code null} for all other start rules.
+   */
+  public @Nullable Set<String> getTopLevelItemRules() {
+    if (rules.size() == 0) return null;
+    EbnfRuleAnalysis startRule = rules.getRule(0);
+    EbnfTokenTable tokens = startRule.getTokens();
+
+    // name = { item | item ... } ;
+    int state = 0;
+    for (int i = 0; i < tokens.size(); i++) {
+      int kind = tokens.getKind(i);
+      if (kind == EbnfTokenTable.WHITESPACE) continue;
+      switch (state) {
+        case 0: if (kind != EbnfTokenTable.IDENTIFIER) return null; state = 1; break;
+        case 1: if (kind == EbnfTokenTable.ASSIGN) state = 2; else if (kind != EbnfTokenTable.IDENTIFIER) return null; break;
+        case 2: if (kind != EbnfTokenTable.L_BRACE) return null; state = 3; break;
+        case 3: if (kind != EbnfTokenTable.IDENTIFIER) return null; state = 4; break;
+        case 4:
+          if (kind == EbnfTokenTable.PIPE) state = 3;
+          else if (kind == EbnfTokenTable.R_BRACE) state = 5;
+          else if (kind != EbnfTokenTable.IDENTIFIER) return null;
+          break;
+        case 5: if (kind != EbnfTokenTable.SEMICOLON) return null; state = 6; break;
+        default: return null;
+      }
+    }
+    if (state < 5 || startRule.getReferences().isEmpty()) return null;
+
+    Set<String> items = new HashSet<>();
+    for (EbnfRuleAnalysis.Symbol ref : startRule.getReferences()) items.add(ref.name);
+    return items;
+  }
+
+  /**
+   * Literal terminals that close the item rules of the start rule, e.g. {@code ";"} for
+   * {@code stmt = expr, ";";}. After a rejected item, the live tester resumes parsing behind the
+   * next of these. Empty if the grammar has no item rules or none of them ends in a literal.
+   */
+  public Set<String> getItemTerminators() {
+    Set<String> items = getTopLevelItemRules();
+    if (items == null) return Set.of();
+
+    Set<String> terminators = new HashSet<>();
+    for (int r = 0; r < rules.size(); r++) {
+      EbnfRuleAnalysis rule = rules.getRule(r);
+      if (rule.getDefinitions().isEmpty() || !items.contains(rule.getDefinitions().get(0).name)) continue;
+
+      // Last token in front of the closing ';'
+      EbnfTokenTable tokens = rule.getTokens();
+      int last = -1;
+      for (int i = 0; i < tokens.size(); i++) {
+        int kind = tokens.getKind(i);
+        if (kind == EbnfTokenTable.SEMICOLON) break;
+        if (kind != EbnfTokenTable.WHITESPACE) last = i;
+      }
+      if (last < 0 || tokens.getKind(last) != EbnfTokenTable.STRING) continue;
+      String literal = tokens.getText(last);
+      if (literal.length() > 2) terminators.add(literal.substring(1, literal.length() - 1));
+    }
+    return terminators;
+  }
+}
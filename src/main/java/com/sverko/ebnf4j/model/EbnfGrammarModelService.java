@@ -0,0 +1,69 @@
+package com.sverko.ebnf4j.model;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.util.containers.ContainerUtil;
+import com.sverko.ebnf4j.annotator.EbnfCancellation;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Holds one {@link EbnfGrammarModel} per grammar document. The annotator, the semantic
+ * highlighting pass, completion and the live tester all ask for the model of the same
+ * modification stamp, so every edit is analysed at most once.
+ */
+@Service(Service.Level.PROJECT)
+public final class EbnfGrammarModelService {
+
+  private static final Key<EbnfGrammarModel> MODEL_KEY = Key.create("EBNF_GRAMMAR_MODEL");
+
+  private final ConcurrentMap<Document, ReentrantLock> locks = ContainerUtil.createConcurrentWeakMap();
+
+  public static EbnfGrammarModelService getInstance(@NotNull Project project) {
+    return project.getService(EbnfGrammarModelService.class);
+  }
+
+  /**
+   * Returns the model of {@code text}, the content of {@code document} at {@code stamp}.
+   * Concurrent callers for the same document wait for a single computation. {@code text} is only
+   * copied into a {@code String} if the model has to be computed; pass the document's immutable
+   * char sequence to avoid a copy per caller.
+   */
+  public @NotNull EbnfGrammarModel getModel(@NotNull Document document, @NotNull CharSequence text, long stamp,
+                                            @NotNull EbnfCancellation cancellation) {
+    EbnfGrammarModel model = document.getUserData(MODEL_KEY);
+    if (model != null && model.getStamp() == stamp) return model;
+
+    ReentrantLock lock = locks.computeIfAbsent(document, d -> new ReentrantLock());
+    acquire(lock, cancellation);
+    try {
+      model = document.getUserData(MODEL_KEY);
+      if (model != null && model.getStamp() == stamp) return model;
+
+      EbnfGrammarModel computed = EbnfGrammarModel.compute(model, text.toString(), stamp, cancellation);
+      // Never replace a newer model with one computed from an older snapshot
+      if (model == null || model.getStamp() < stamp) {
+        document.putUserData(MODEL_KEY, computed);
+      }
+      return computed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static void acquire(ReentrantLock lock, EbnfCancellation cancellation) {
+    try {
+      while (!lock.tryLock(10, TimeUnit.MILLISECONDS)) {
+        cancellation.checkCanceled();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessCanceledException(e);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.sverko.ebnf4j.model;
+
+import com.sverko.ebnf.EbnfParserGenerator;
+import com.sverko.ebnf.Lexer;
+import com.sverko.ebnf.Parser;
+import com.sverko.ebnf.TokenQueue;
+import com.sverko.ebnf4j.annotator.EbnfCancellation;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * One grammar text that test inputs are parsed against. Library parsers keep the state of the
+ * running parse, so every run borrows its own {@link EbnfTestParser}; idle instances are pooled
+ * and extra ones are generated only while more runs than pooled parsers are in flight.
+ */
+public final class EbnfTestGrammar {
+
+  private static final int MAX_IDLE = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+  private final String schemaText;
+  private final List<String> ruleNames;
+  private final Set<String> itemTerminators;
+  private final ArrayDeque<EbnfTestParser> idle = new ArrayDeque<>();
+
+  private EbnfTestGrammar(String schemaText, Collection<String> ruleNames, Set<String> itemTerminators,
+                          EbnfTestParser first) {
+    this.schemaText = schemaText;
+    this.ruleNames = List.copyOf(ruleNames);
+    this.itemTerminators = Set.copyOf(itemTerminators);
+    idle.push(first);
+  }
+
+  /** Generates the first parser of {@code schemaText}; {@code null} if that fails. */
+  static @Nullable EbnfTestGrammar build(String schemaText, Collection<String> ruleNames,
+                                         Set<String> itemTerminators) {
+    Parser parser = buildParser(schemaText);
+    return parser != null
+        ? new EbnfTestGrammar(schemaText, ruleNames, itemTerminators, new EbnfTestParser(parser, ruleNames))
+        : null;
+  }
+
+  public String getSchemaText() {
+    return schemaText;
+  }
+
+  /** See {@link EbnfGrammarModel#getItemTerminators()}. */
+  public Set<String> getItemTerminators() {
+    return itemTerminators;
+  }
+
+  /**
+   * A parser for the exclusive use of the caller until it is passed to {@link #release};
+   * {@code null} only if generating an additional instance fails.
+   */
+  public @Nullable EbnfTestParser borrow() {
+    synchronized (idle) {
+      EbnfTestParser parser = idle.poll();
+      if (parser != null) return parser;
+    }
+    Parser parser = buildParser(schemaText);
+    return parser != null ? new EbnfTestParser(parser, ruleNames) : null;
+  }
+
+  /**
+   * Returns a parser after a run, canceled runs included - otherwise every canceled keystroke
+   * would cost the next run a full parser generation.
+   */
+  public void release(EbnfTestParser parser) {
+    parser.setCancellation(EbnfCancellation.NONE);
+    synchronized (idle) {
+      if (idle.size() < MAX_IDLE) idle.push(parser);
+    }
+  }
+
+  private static @Nullable Parser buildParser(String schemaText) {
+    try {
+      Lexer schemaLexer = new Lexer(Set.of("\n","\t","\s","{:"));
+      TokenQueue schemaTokens = schemaLexer.lexText(schemaText);
+
+      EbnfParserGenerator generator = new EbnfParserGenerator();
+      return generator.getParser(schemaTokens, true);
+    } catch (Exception e) {
+      System.err.println("Error building parser: " + e.getMessage());
+      return null;
+    }
+  }
+}
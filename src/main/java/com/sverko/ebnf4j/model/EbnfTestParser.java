@@ -0,0 +1,60 @@
+package com.sverko.ebnf4j.model;
+
+import com.sverko.ebnf.ParseNodeEvent;
+import com.sverko.ebnf.ParseNodeEventListener;
+import com.sverko.ebnf.Parser;
+import com.sverko.ebnf4j.annotator.EbnfCancellation;
+import java.util.Collection;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Parser generated from a grammar, used to test inputs against it. A dispatching listener is
+ * assigned to all rules once; each {@link #parse} call decides where the node events go.
+ */
+public final class EbnfTestParser implements ParseNodeEventListener {
+
+  private final Parser parser;
+  private volatile ParseNodeEventListener sink;
+  private volatile EbnfCancellation cancellation = EbnfCancellation.NONE;
+
+  EbnfTestParser(Parser parser, Collection<String> ruleNames) {
+    this.parser = parser;
+    if (!ruleNames.isEmpty()) {
+      parser.assignNodeEventListeners(this, ruleNames.toArray(new String[0]));
+    }
+  }
+
+  public Parser getParser() {
+    return parser;
+  }
+
+  /**
+   * Polled on the node events of the following runs; a canceled run ends with a
+   * {@link com.intellij.openapi.progress.ProcessCanceledException} thrown out of {@link #parse}.
+   * The parser can be reused after that: every parse lexes its input into a new token queue and
+   * starts over at the start rule.
+   */
+  public void setCancellation(EbnfCancellation cancellation) {
+    this.cancellation = cancellation;
+  }
+
+  /**
+   * Parses {@code text}; node events of all grammar rules are passed to {@code listener}
+   * (if any) while this call runs.
+   */
+  public int parse(String text, @Nullable ParseNodeEventListener listener) {
+    sink = listener;
+    try {
+      return parser.parse(text);
+    } finally {
+      sink = null;
+    }
+  }
+
+  @Override
+  public void parseNodeEventOccurred(ParseNodeEvent e) {
+    cancellation.tick();
+    ParseNodeEventListener s = sink;
+    if (s != null) s.parseNodeEventOccurred(e);
+  }
+}
@@ -0,0 +1,75 @@
+package com.sverko.ebnf4j.model;
+
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Test grammars of recently used grammar texts, keyed by the text. Switching between open
+ * grammars or undoing back to an earlier text finds the parsers built before instead of
+ * generating them again.
+ */
+@Service(Service.Level.APP)
+public final class EbnfTestParserCache {
+
+  private static final int MAX_ENTRIES = 16;
+  private static final EbnfTestParserCache HEADLESS = new EbnfTestParserCache();
+
+  // Grammars that cannot be turned into a parser are cached as well
+  private static final Object NO_GRAMMAR = new Object();
+
+  private final Map<String, Object> grammars = new LinkedHashMap<>(MAX_ENTRIES, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public static EbnfTestParserCache getInstance() {
+    Application application = ApplicationManager.getApplication();
+    return application != null ? application.getService(EbnfTestParserCache.class) : HEADLESS;
+  }
+
+  /**
+   * Returns the test grammar of {@code schemaText}, building it on a miss; {@code null} if the
+   * grammar cannot be turned into a parser. {@code ruleNames} and {@code itemTerminators} are
+   * derived from {@code schemaText}, so the ones of the first caller are kept.
+   */
+  public @Nullable EbnfTestGrammar get(String schemaText, Collection<String> ruleNames,
+                                       Set<String> itemTerminators) {
+    Object cached;
+    synchronized (grammars) {
+      cached = grammars.get(schemaText);
+    }
+    if (cached != null) {
+      hits.incrementAndGet();
+      return cached == NO_GRAMMAR ? null : (EbnfTestGrammar) cached;
+    }
+
+    misses.incrementAndGet();
+    EbnfTestGrammar grammar = EbnfTestGrammar.build(schemaText, ruleNames, itemTerminators);
+    synchronized (grammars) {
+      // Another thread may have built the same grammar meanwhile - keep the first one
+      Object existing = grammars.putIfAbsent(schemaText, grammar != null ? grammar : NO_GRAMMAR);
+      if (existing != null) return existing == NO_GRAMMAR ? null : (EbnfTestGrammar) existing;
+    }
+    return grammar;
+  }
+
+  public long getHitCount() { return hits.get(); }
+  public long getMissCount() { return misses.get(); }
+
+  public int size() {
+    synchronized (grammars) {
+      return grammars.size();
+    }
+  }
+}
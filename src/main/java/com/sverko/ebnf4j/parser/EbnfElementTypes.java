@@ -5,5 +5,9 @@ import com.sverko.ebnf4j.EbnfLanguage;
 
 public interface EbnfElementTypes {
   IElementType FILE = new IElementType("EBNF_FILE", EbnfLanguage.INSTANCE);
-  IElementType RULE = new IElementType("EBNF_RULE", EbnfLanguage.INSTANCE);
+  IElementType RULE = new EbnfRuleElementType("EBNF_RULE");
+  IElementType DEFINITION_NAME = new IElementType("EBNF_DEFINITION_NAME", EbnfLanguage.INSTANCE);
+  IElementType ALTERNATIVE = new IElementType("EBNF_ALTERNATIVE", EbnfLanguage.INSTANCE);
+  IElementType GROUP = new IElementType("EBNF_GROUP", EbnfLanguage.INSTANCE);
+  IElementType REFERENCE = new IElementType("EBNF_REFERENCE", EbnfLanguage.INSTANCE);
 }
@@ -21,7 +21,7 @@ import org.jetbrains.annotations.NotNull;
 public class EbnfParserDefinition implements ParserDefinition {
 
   public static final TokenSet WHITE_SPACES = TokenSet.create(EbnfTokenTypes.WHITESPACE);
-  public static final TokenSet COMMENTS = TokenSet.EMPTY;
+  public static final TokenSet COMMENTS = TokenSet.create(EbnfTokenTypes.COMMENT);
   public static final TokenSet STRINGS = TokenSet.create(EbnfTokenTypes.STRING);
 
   public static final IFileElementType FILE = new IFileElementType(EbnfLanguage.INSTANCE);
@@ -4,19 +4,104 @@ import com.intellij.lang.ASTNode;
 import com.intellij.lang.PsiBuilder;
 import com.intellij.lang.PsiParser;
 import com.intellij.psi.tree.IElementType;
+import com.sverko.ebnf4j.lexer.EbnfTokenTypes;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-public class EbnfPsiParser implements PsiParser {
+/**
+ * Builds the rule structure of a grammar: RULE nodes (lazily parsed and reparseable) containing
+ * the DEFINITION_NAME, one ALTERNATIVE per {@code |} branch, GROUP nodes for {@code ()},
+ * {@code []}, {@code {}} and {@code {:}} and REFERENCE nodes for used names.
+ * The parser is tolerant and never reports errors; syntax errors come from the schema parser
+ * in {@link com.sverko.ebnf4j.annotator.EbnfExternalAnnotator}.
+ */
+public class EbnfPsiParser implements PsiParser, EbnfTokenTypes {
 
   @Override
   public @NotNull ASTNode parse(@NotNull IElementType root, @NotNull PsiBuilder builder) {
     PsiBuilder.Marker rootMarker = builder.mark();
 
-    while (!builder.eof()) {
-      builder.advanceLexer();
+    if (root == EbnfElementTypes.RULE) {
+      // Contents of a collapsed rule (see EbnfRuleElementType)
+      parseRuleContents(builder);
+    } else {
+      parseRules(builder);
     }
 
     rootMarker.done(root);
     return builder.getTreeBuilt();
   }
+
+  private static void parseRules(PsiBuilder builder) {
+    while (!builder.eof()) {
+      // A rule reaches up to and including its terminator; it is parsed when it is first accessed
+      PsiBuilder.Marker rule = builder.mark();
+      while (!builder.eof() && builder.getTokenType() != SEMICOLON) {
+        builder.advanceLexer();
+      }
+      if (!builder.eof()) builder.advanceLexer();
+      rule.collapse(EbnfElementTypes.RULE);
+    }
+  }
+
+  private static void parseRuleContents(PsiBuilder builder) {
+    if (builder.getTokenType() == IDENTIFIER) {
+      PsiBuilder.Marker name = builder.mark();
+      // Meta identifiers may consist of several words
+      while (builder.getTokenType() == IDENTIFIER) builder.advanceLexer();
+      name.done(EbnfElementTypes.DEFINITION_NAME);
+    }
+    if (builder.getTokenType() == ASSIGN) builder.advanceLexer();
+
+    parseAlternatives(builder, null);
+
+    // Whatever follows the terminator stays a plain child of the rule
+    while (!builder.eof()) builder.advanceLexer();
+  }
+
+  /**
+   * @param closer closing token of the enclosing group, {@code null} on rule level
+   */
+  private static void parseAlternatives(PsiBuilder builder, @Nullable IElementType closer) {
+    while (true) {
+      int start = builder.getCurrentOffset();
+      PsiBuilder.Marker alternative = builder.mark();
+      parseSequence(builder, closer);
+      if (builder.getCurrentOffset() > start) {
+        alternative.done(EbnfElementTypes.ALTERNATIVE);
+      } else {
+        alternative.drop();
+      }
+      if (builder.getTokenType() != PIPE) return;
+      builder.advanceLexer();
+    }
+  }
+
+  private static void parseSequence(PsiBuilder builder, @Nullable IElementType closer) {
+    IElementType type;
+    while ((type = builder.getTokenType()) != null && type != PIPE && type != SEMICOLON) {
+      if (isCloser(type)) {
+        // Inside a group any closer ends it; stray closers on rule level are skipped
+        if (closer != null) return;
+        builder.advanceLexer();
+      } else if (type == IDENTIFIER) {
+        PsiBuilder.Marker reference = builder.mark();
+        while (builder.getTokenType() == IDENTIFIER) builder.advanceLexer();
+        reference.done(EbnfElementTypes.REFERENCE);
+      } else if (type == L_BRACE || type == COL_BRACE || type == L_BRACKET || type == L_PAREN) {
+        IElementType groupCloser = type == L_BRACKET ? R_BRACKET : type == L_PAREN ? R_PAREN : R_BRACE;
+        PsiBuilder.Marker group = builder.mark();
+        builder.advanceLexer();
+        parseAlternatives(builder, groupCloser);
+        if (builder.getTokenType() == groupCloser) builder.advanceLexer();
+        group.done(EbnfElementTypes.GROUP);
+      } else {
+        builder.advanceLexer();
+      }
+    }
+  }
+
+  private static boolean isCloser(IElementType type) {
+    return type == R_BRACE || type == R_BRACKET || type == R_PAREN;
+  }
 }
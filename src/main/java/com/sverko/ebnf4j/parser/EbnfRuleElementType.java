@@ -0,0 +1,42 @@
+package com.sverko.ebnf4j.parser;
+
+import com.intellij.lang.Language;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.IReparseableElementType;
+import com.sverko.ebnf4j.EbnfLanguage;
+import com.sverko.ebnf4j.lexer.EbnfLexer;
+import com.sverko.ebnf4j.lexer.EbnfTokenTypes;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A single grammar rule ({@code name = ... ;}). Rules are collapsed by {@link EbnfPsiParser} and
+ * parsed lazily; after an edit inside one rule the platform reparses only that rule, as long as
+ * the new text is still exactly one rule.
+ */
+public class EbnfRuleElementType extends IReparseableElementType {
+
+  public EbnfRuleElementType(@NonNls @NotNull String debugName) {
+    super(debugName, EbnfLanguage.INSTANCE);
+  }
+
+  @Override
+  public boolean isParsable(@NotNull CharSequence buffer, @NotNull Language fileLanguage, @NotNull Project project) {
+    EbnfLexer lexer = new EbnfLexer();
+    lexer.start(buffer, 0, buffer.length(), 0);
+
+    // Must start with the definition name ...
+    if (lexer.getTokenType() != EbnfTokenTypes.IDENTIFIER) return false;
+
+    // ... and end with its only terminator, nothing after it
+    IElementType type;
+    while ((type = lexer.getTokenType()) != null) {
+      if (type == EbnfTokenTypes.SEMICOLON) {
+        return lexer.getTokenEnd() == buffer.length();
+      }
+      lexer.advance();
+    }
+    return false;
+  }
+}
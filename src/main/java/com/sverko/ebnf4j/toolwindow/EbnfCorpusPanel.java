@@ -0,0 +1,251 @@
+package com.sverko.ebnf4j.toolwindow;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.actionSystem.ActionManager;
+import com.intellij.openapi.actionSystem.ActionToolbar;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.DefaultActionGroup;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.SimpleToolWindowPanel;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.ui.JBUI;
+import com.intellij.icons.AllIcons;
+import com.sverko.ebnf4j.annotator.EbnfCancellation;
+import com.sverko.ebnf4j.model.EbnfGrammarModel;
+import com.sverko.ebnf4j.model.EbnfGrammarModelService;
+import com.sverko.ebnf4j.model.EbnfTestGrammar;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * "Corpus" tab of the live tester: parses all files of a directory against a grammar and lists
+ * the outcome per file while the run is in progress.
+ */
+public class EbnfCorpusPanel implements Disposable {
+
+  static final Key<EbnfCorpusPanel> KEY = Key.create("EBNF_CORPUS_PANEL");
+
+  private static final int REFRESH_MS = 250;
+
+  private final Project project;
+  private final SimpleToolWindowPanel mainPanel = new SimpleToolWindowPanel(true, true);
+  private final ResultTableModel tableModel = new ResultTableModel();
+  private final JBTable table = new JBTable(tableModel);
+  private final JLabel summary = new JLabel("Noch kein Lauf.");
+
+  private final Timer refreshTimer = new Timer(REFRESH_MS, e -> drainResults());
+
+  // Set on the EDT only; results of any other runner are dropped
+  private volatile EbnfCorpusRunner runner;
+  // Results of the current runner, filled by the pool threads and drained on the EDT
+  private ConcurrentLinkedQueue<EbnfCorpusRunner.FileResult> pending = new ConcurrentLinkedQueue<>();
+  private int totalFiles;
+  private int accepted, incomplete, rejected, failed;
+
+  public EbnfCorpusPanel(Project project) {
+    this.project = project;
+
+    DefaultActionGroup group = new DefaultActionGroup();
+    AnAction run = ActionManager.getInstance().getAction("Ebnf.RunCorpus");
+    if (run != null) group.add(run);
+    group.add(new AnAction("Stop", "Laufenden Korpus-Test abbrechen", AllIcons.Actions.Suspend) {
+      @Override
+      public void actionPerformed(@NotNull AnActionEvent e) { stop(); }
+
+      @Override
+      public void update(@NotNull AnActionEvent e) { e.getPresentation().setEnabled(runner != null); }
+
+      @Override
+      public @NotNull ActionUpdateThread getActionUpdateThread() { return ActionUpdateThread.EDT; }
+    });
+    ActionToolbar toolbar = ActionManager.getInstance().createActionToolbar("EbnfCorpus", group, true);
+    toolbar.setTargetComponent(table);
+    mainPanel.setToolbar(toolbar.getComponent());
+
+    table.setAutoCreateRowSorter(true);
+    table.addMouseListener(new MouseAdapter() {
+      @Override
+      public void mouseClicked(MouseEvent e) {
+        if (e.getClickCount() == 2) openSelected();
+      }
+    });
+
+    JPanel root = new JPanel(new BorderLayout());
+    summary.setBorder(JBUI.Borders.empty(4, 8));
+    root.add(summary, BorderLayout.NORTH);
+    root.add(new JBScrollPane(table), BorderLayout.CENTER);
+    mainPanel.setContent(root);
+  }
+
+  public JComponent getComponent() { return mainPanel; }
+
+  /** Parses all files below {@code directory} against the grammar in {@code schemaFile}. */
+  void run(@NotNull VirtualFile schemaFile, @NotNull VirtualFile directory) {
+    stop();
+    Document schemaDoc = FileDocumentManager.getInstance().getDocument(schemaFile);
+    if (schemaDoc == null) return;
+
+    tableModel.clear();
+    accepted = incomplete = rejected = failed = 0;
+    summary.setText("Sammle Dateien in " + directory.getPresentableUrl() + " ...");
+
+    // Created here, so a Stop right after this call already reaches it
+    EbnfCorpusRunner current = new EbnfCorpusRunner();
+    ConcurrentLinkedQueue<EbnfCorpusRunner.FileResult> results = new ConcurrentLinkedQueue<>();
+    runner = current;
+    pending = results;
+    AppExecutorUtil.getAppExecutorService().execute(() -> {
+      String schemaText = ReadAction.compute(schemaDoc::getText);
+      long stamp = ReadAction.compute(schemaDoc::getModificationStamp);
+      EbnfGrammarModel model = EbnfGrammarModelService.getInstance(project)
+          .getModel(schemaDoc, schemaText, stamp, EbnfCancellation.NONE);
+      EbnfTestGrammar grammar = model.getTestGrammar();
+      if (grammar == null) {
+        finish(current, "Aus " + schemaFile.getName() + " kann kein Parser erzeugt werden.");
+        return;
+      }
+
+      List<Path> files;
+      try {
+        files = EbnfCorpusRunner.collectFiles(directory.toNioPath());
+      } catch (Exception e) {
+        finish(current, "Verzeichnis nicht lesbar: " + e.getMessage());
+        return;
+      }
+
+      ApplicationManager.getApplication().invokeLater(() -> {
+        if (runner != current) return;
+        totalFiles = files.size();
+        refreshTimer.start();
+      });
+      try {
+        current.run(grammar, files, results::add);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        ApplicationManager.getApplication().invokeLater(() -> {
+          if (runner != current) return;
+          refreshTimer.stop();
+          drainResults();
+          runner = null;
+        });
+      }
+    });
+  }
+
+  private void stop() {
+    EbnfCorpusRunner current = runner;
+    if (current != null) current.stop();
+  }
+
+  /** Ends {@code current} before it parsed anything, unless another run replaced it meanwhile. */
+  private void finish(EbnfCorpusRunner current, String text) {
+    ApplicationManager.getApplication().invokeLater(() -> {
+      if (runner != current) return;
+      runner = null;
+      summary.setText(text);
+    });
+  }
+
+  private void drainResults() {
+    EbnfCorpusRunner current = runner;
+    if (current == null) return;
+    List<EbnfCorpusRunner.FileResult> batch = new ArrayList<>();
+    EbnfCorpusRunner.FileResult r;
+    while ((r = pending.poll()) != null) {
+      batch.add(r);
+      switch (r.status) {
+        case ACCEPTED -> accepted++;
+        case INCOMPLETE -> incomplete++;
+        case REJECTED -> rejected++;
+        case ERROR -> failed++;
+      }
+    }
+    tableModel.addAll(batch);
+
+    double seconds = Math.max(current.getElapsedSeconds(), 1e-3);
+    int done = current.getFilesDone();
+    summary.setText(String.format("%d / %d Dateien - %d akzeptiert, %d unvollstaendig, %d abgelehnt, %d Fehler - %.1f Dateien/s, %.2f MB/s",
+        done, totalFiles, accepted, incomplete, rejected, failed,
+        done / seconds, current.getBytesDone() / (1024.0 * 1024.0) / seconds));
+  }
+
+  private void openSelected() {
+    int row = table.getSelectedRow();
+    if (row < 0) return;
+    EbnfCorpusRunner.FileResult result = tableModel.get(table.convertRowIndexToModel(row));
+    VirtualFile vf = LocalFileSystem.getInstance().findFileByNioFile(result.file);
+    if (vf == null) return;
+    new OpenFileDescriptor(project, vf, Math.max(result.errorOffset, 0)).navigate(true);
+  }
+
+  @Override
+  public void dispose() {
+    stop();
+    refreshTimer.stop();
+  }
+
+  private static final class ResultTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"Datei", "Ergebnis", "Erster Fehler (Offset)", "Groesse (Bytes)", "Zeit (ms)"};
+    private final List<EbnfCorpusRunner.FileResult> rows = new ArrayList<>();
+
+    void clear() {
+      rows.clear();
+      fireTableDataChanged();
+    }
+
+    void addAll(List<EbnfCorpusRunner.FileResult> batch) {
+      if (batch.isEmpty()) return;
+      int first = rows.size();
+      rows.addAll(batch);
+      fireTableRowsInserted(first, rows.size() - 1);
+    }
+
+    EbnfCorpusRunner.FileResult get(int row) { return rows.get(row); }
+
+    @Override public int getRowCount() { return rows.size(); }
+    @Override public int getColumnCount() { return COLUMNS.length; }
+    @Override public String getColumnName(int column) { return COLUMNS[column]; }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+      return switch (column) {
+        case 2 -> Integer.class;
+        case 3, 4 -> Long.class;
+        default -> String.class;
+      };
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+      EbnfCorpusRunner.FileResult r = rows.get(row);
+      return switch (column) {
+        case 0 -> r.file.toString();
+        case 1 -> r.message != null ? r.status + ": " + r.message : r.status.toString();
+        case 2 -> r.errorOffset >= 0 ? r.errorOffset : null;
+        case 3 -> r.size;
+        default -> r.millis;
+      };
+    }
+  }
+}
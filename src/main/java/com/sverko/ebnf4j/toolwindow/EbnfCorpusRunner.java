@@ -0,0 +1,161 @@
+package com.sverko.ebnf4j.toolwindow;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.sverko.ebnf.TokenQueue;
+import com.sverko.ebnf4j.annotator.EbnfCancellation;
+import com.sverko.ebnf4j.model.EbnfTestGrammar;
+import com.sverko.ebnf4j.model.EbnfTestParser;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Parses every file below a directory against one grammar. Files run in parallel on a pool
+ * bounded to the number of cores, each run on its own pooled parser of the grammar. Results are
+ * handed to a callback as soon as a file is done.
+ */
+final class EbnfCorpusRunner {
+
+  private static final int POOL_SIZE = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+  private final AtomicBoolean stopped = new AtomicBoolean();
+  private final AtomicInteger filesDone = new AtomicInteger();
+  private final AtomicLong bytesDone = new AtomicLong();
+  private volatile long startNanos;
+  private volatile long endNanos;
+
+  /** Collects the regular files below {@code directory}, sorted by path. */
+  static List<Path> collectFiles(Path directory) throws IOException {
+    try (Stream<Path> walk = Files.walk(directory)) {
+      return walk.filter(Files::isRegularFile).sorted().toList();
+    }
+  }
+
+  /**
+   * Parses {@code files} against {@code grammar}; blocks until all are done or {@link #stop} was
+   * called. A stop before this call makes it return without parsing.
+   */
+  void run(EbnfTestGrammar grammar, List<Path> files, Consumer<FileResult> results) throws InterruptedException {
+    startNanos = System.nanoTime();
+    ExecutorService pool = AppExecutorUtil.createBoundedApplicationPoolExecutor("EBNF Corpus Runner", POOL_SIZE);
+    CountDownLatch done = new CountDownLatch(files.size());
+    try {
+      for (Path file : files) {
+        pool.execute(() -> {
+          try {
+            if (stopped.get()) return;
+            FileResult result = parseFile(grammar, file);
+            if (result == null) return;
+            filesDone.incrementAndGet();
+            bytesDone.addAndGet(result.size);
+            results.accept(result);
+          } finally {
+            done.countDown();
+          }
+        });
+      }
+      done.await();
+    } finally {
+      pool.shutdownNow();
+      endNanos = System.nanoTime();
+    }
+  }
+
+  void stop() {
+    stopped.set(true);
+  }
+
+  int getFilesDone() { return filesDone.get(); }
+  long getBytesDone() { return bytesDone.get(); }
+
+  /** Seconds since the run started, up to its end once it finished. */
+  double getElapsedSeconds() {
+    if (startNanos == 0) return 0;
+    long end = endNanos != 0 ? endNanos : System.nanoTime();
+    return (end - startNanos) / 1e9;
+  }
+
+  /** The outcome of {@code file}, {@code null} if the run was stopped meanwhile. */
+  private @Nullable FileResult parseFile(EbnfTestGrammar grammar, Path file) {
+    long started = System.nanoTime();
+    long size = 0;
+    try {
+      byte[] bytes = Files.readAllBytes(file);
+      size = bytes.length;
+      String text = decode(bytes);
+
+      EbnfTestParser parser = grammar.borrow();
+      if (parser == null) return new FileResult(file, size, Status.ERROR, -1, elapsedMillis(started), "Kein Parser");
+      // Stop also ends the files that are being parsed right now
+      parser.setCancellation(new EbnfCancellation(stopped::get));
+      try {
+        int rFull = parser.parse(text, null);
+        TokenQueue tokens = parser.getParser().getTokenQueue();
+        if (rFull == tokens.rawSize()) {
+          return new FileResult(file, size, Status.ACCEPTED, -1, elapsedMillis(started), null);
+        }
+        // Same meaning as in the live tester: input that just ends inside a rule is not rejected
+        if (!EbnfLiveMatcher.isRejected(rFull, tokens)) {
+          return new FileResult(file, size, Status.INCOMPLETE, text.length(), elapsedMillis(started), null);
+        }
+        int[] segs = EbnfLiveMatcher.tokenSegments(text, tokens);
+        int accepted = EbnfLiveMatcher.acceptedTokens(rFull, tokens, segs.length / 2);
+        int errorOffset = accepted > 0 ? segs[(accepted - 1) * 2 + 1] : 0;
+        return new FileResult(file, size, Status.REJECTED, errorOffset, elapsedMillis(started), null);
+      } finally {
+        grammar.release(parser);
+      }
+    } catch (ProcessCanceledException e) {
+      return null;
+    } catch (Exception e) {
+      return new FileResult(file, size, Status.ERROR, -1, elapsedMillis(started), e.getMessage());
+    }
+  }
+
+  private static String decode(byte[] bytes) {
+    try {
+      return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+    } catch (CharacterCodingException e) {
+      // Not UTF-8: every byte becomes one char
+      return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+  }
+
+  private static long elapsedMillis(long startedNanos) {
+    return (System.nanoTime() - startedNanos) / 1_000_000;
+  }
+
+  /** {@code INCOMPLETE}: no error, but the input ended before the start rule was complete. */
+  enum Status { ACCEPTED, INCOMPLETE, REJECTED, ERROR }
+
+  static final class FileResult {
+    final Path file;
+    final long size;
+    final Status status;
+    final int errorOffset;
+    final long millis;
+    final String message;
+
+    FileResult(Path file, long size, Status status, int errorOffset, long millis, String message) {
+      this.file = file;
+      this.size = size;
+      this.status = status;
+      this.errorOffset = errorOffset;
+      this.millis = millis;
+      this.message = message;
+    }
+  }
+}
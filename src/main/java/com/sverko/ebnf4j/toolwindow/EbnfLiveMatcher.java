@@ -0,0 +1,561 @@
+package com.sverko.ebnf4j.toolwindow;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.sverko.ebnf.ParseNodeEvent;
+import com.sverko.ebnf.ParseNodeEventListener;
+import com.sverko.ebnf.TokenQueue;
+import com.sverko.ebnf4j.annotator.EbnfCancellation;
+import com.sverko.ebnf4j.model.EbnfTestGrammar;
+import com.sverko.ebnf4j.model.EbnfTestParser;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Parses live-test texts and turns the outcome into green (accepted) and red (rejected) ranges.
+ * <p>
+ * If the start rule of the grammar is a repetition of items ({@code start = { a | b };}), the
+ * start offsets of the accepted top-level items are kept as checkpoints. The next text is only
+ * parsed from the last checkpoint that lies safely before the first changed character; the ranges
+ * in front of it are taken over from the previous run.
+ * <p>
+ * Runs borrow their own parser from the grammar, so any number of them may be in flight.
+ * <p>
+ * With a {@link EbnfWindowCache}, item-sequence inputs are parsed in windows of about
+ * {@link #WINDOW_CHARS} characters that start at item boundaries and end at a line end. A
+ * window whose text was parsed before is taken from the cache, so unchanged regions and repeated
+ * content cost a lookup. The cache keeps whole window results, not rule outcomes per token
+ * position: backtracking inside a window, or inside an item that grows its window, is as
+ * expensive as without it, so parse time is not bounded on pathological grammars.
+ * <p>
+ * With error recovery on, item-sequence inputs are parsed with error recovery: behind a rejected
+ * item the text is skipped up to the end of the next sync token, and parsing starts over there.
+ * One run then reports every error of the input instead of painting everything after the first
+ * one red.
+ */
+final class EbnfLiveMatcher {
+
+  private static final int[] NO_CHECKPOINTS = new int[0];
+  static final int WINDOW_CHARS = 8192;
+
+  private final int maxHighlightSegments;
+  private volatile Run lastRun;
+  private volatile EbnfWindowCache windowCache;
+  private volatile Recovery recovery = Recovery.OFF;
+
+  EbnfLiveMatcher(int maxHighlightSegments) {
+    this.maxHighlightSegments = maxHighlightSegments;
+  }
+
+  /**
+   * Matches {@code text} against {@code grammar}. {@code itemRules} are the rules repeated by the
+   * start rule, {@code null} if the input cannot be parsed item by item. A {@code profile} and a
+   * {@code tree} receive the node events of all rules; such runs always parse the whole text. Once
+   * {@code cancellation} reports a cancel, the run stops with a {@link ProcessCanceledException}.
+   */
+  List<MatchResult> match(EbnfTestGrammar grammar, @Nullable Set<String> itemRules, String text,
+                          @Nullable EbnfRuleProfile profile, @Nullable EbnfParseEventLog tree,
+                          EbnfCancellation cancellation) {
+    boolean observed = profile != null || tree != null;
+    // Read once, so a change in the middle of the run cannot mix two sets of tokens
+    Set<String> sync = recovery.tokens(grammar);
+    Run last = lastRun;
+    int resumeAt = 0;
+    if (itemRules != null && last != null && last.grammar == grammar && Objects.equals(last.sync, sync) && !observed) {
+      if (last.text.equals(text)) return last.matches;
+      resumeAt = findResumeOffset(last, text);
+    }
+
+    EbnfTestParser parser = grammar.borrow();
+    if (parser == null) return List.of(new MatchResult(0, text.length(), false));
+    parser.setCancellation(cancellation);
+    EbnfWindowCache windowCache = this.windowCache;
+    Run run;
+    try {
+      if (windowCache != null && itemRules != null && !observed) {
+        Run suffix = parseWindows(grammar, parser, itemRules, text, resumeAt, windowCache, sync);
+        run = resumeAt > 0 ? join(last, resumeAt, suffix) : suffix;
+      } else if (resumeAt > 0) {
+        Run suffix = parseItems(parser, itemRules, text.substring(resumeAt), null, null, sync);
+        run = join(last, resumeAt, suffix);
+      } else {
+        run = itemRules != null
+            ? parseItems(parser, itemRules, text, profile, tree, sync)
+            : parse(parser, null, text, profile, tree);
+      }
+    } finally {
+      // Also after a cancel: the next parse starts over with a fresh token queue
+      grammar.release(parser);
+    }
+    run.grammar = grammar;
+    run.text = text;
+    run.sync = sync;
+    lastRun = itemRules != null ? run : null;
+    return run.matches;
+  }
+
+  /** Forgets the previous run, e.g. when another test document is shown. */
+  void reset() {
+    lastRun = null;
+  }
+
+  /**
+   * Turns error recovery on or off. {@code customTokens} replace the item terminators of the
+   * grammar as sync tokens; {@code null} or empty keeps the terminators. Called on the EDT when
+   * the user changes the setting; a change forgets the windows cached with other tokens.
+   */
+  void setRecovery(boolean enabled, @Nullable Set<String> customTokens) {
+    Recovery r = !enabled ? Recovery.OFF
+        : new Recovery(true, customTokens != null && !customTokens.isEmpty() ? Set.copyOf(customTokens) : null);
+    if (r.equals(recovery)) return;
+    recovery = r;
+    lastRun = null;
+    EbnfWindowCache windowCache = this.windowCache;
+    if (windowCache != null) windowCache.clear();
+  }
+
+  /** Turns the window cache on ({@code windowCache} not {@code null}) or off. */
+  void setWindowCache(@Nullable EbnfWindowCache windowCache) {
+    this.windowCache = windowCache;
+  }
+
+  /**
+   * Parses {@code text} from {@code from} window by window; the result is relative to {@code from}.
+   * Of every window except the last, only the items before the last checkpoint are kept - the item
+   * at the window end may have been cut off - and the next window starts at that checkpoint.
+   * Without error recovery, the first error ends the run: everything behind it is rejected.
+   */
+  private Run parseWindows(EbnfTestGrammar grammar, EbnfTestParser parser, Set<String> itemRules,
+                           String text, int from, EbnfWindowCache windowCache, @Nullable Set<String> sync) {
+    boolean recovering = sync != null;
+    List<MatchResult> matches = new ArrayList<>();
+    int[] checkpoints = new int[16];
+    int checkpointCount = 0;
+    int n = text.length();
+    int p = from;
+    while (p < n) {
+      Window w = parseWindow(parser, itemRules, text, p, grammar, windowCache, sync);
+      int lastCheckpoint = w.lastCheckpoint();
+      boolean all = w.end == n;
+      int advance = all || lastCheckpoint == 0 ? w.end - p : lastCheckpoint;
+
+      int shift = p - from;
+      int error = -1;
+      for (MatchResult m : w.run.matches) {
+        if (m.endOffset <= advance || all) {
+          if (!m.isMatch && !recovering) {
+            error = m.startOffset;
+            break;
+          }
+          matches.add(new MatchResult(m.startOffset + shift, m.endOffset + shift, m.isMatch));
+        } else if (m.isMatch && m.startOffset < advance) {
+          matches.add(new MatchResult(m.startOffset + shift, advance + shift, true));
+        }
+      }
+      for (int c : w.run.checkpoints) {
+        if (c >= advance && !all) break;
+        if (checkpointCount == checkpoints.length) checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+        checkpoints[checkpointCount++] = c + shift;
+      }
+      if (error >= 0) {
+        matches.add(new MatchResult(error + shift, n - from, false));
+        break;
+      }
+      p += advance;
+    }
+    return new Run(matches, Arrays.copyOf(checkpoints, checkpointCount));
+  }
+
+  /**
+   * Offset of the first rejected character of {@code text}, -1 if it is accepted. Item-sequence
+   * inputs are parsed window by window, so only one window at a time is copied out of
+   * {@code text}; other inputs are parsed as a whole.
+   */
+  int firstError(EbnfTestGrammar grammar, @Nullable Set<String> itemRules, CharSequence text,
+                 EbnfCancellation cancellation) {
+    EbnfTestParser parser = grammar.borrow();
+    if (parser == null) return 0;
+    parser.setCancellation(cancellation);
+    try {
+      return firstError(parser, itemRules, text);
+    } finally {
+      grammar.release(parser);
+    }
+  }
+
+  private int firstError(EbnfTestParser parser, @Nullable Set<String> itemRules, CharSequence text) {
+    if (itemRules == null) return firstError(parse(parser, null, text.toString(), null, null), text.length());
+
+    int n = text.length();
+    int p = 0;
+    while (p < n) {
+      Window w = parseWindow(parser, itemRules, text, p, null, null, null);
+      int lastCheckpoint = w.lastCheckpoint();
+      // Behind the last checkpoint the window may have cut an item off - unless it failed before
+      int advance = w.end == n || lastCheckpoint == 0 ? w.end - p : lastCheckpoint;
+      int error = firstError(w.run, advance);
+      if (error >= 0) return p + error;
+      p += advance;
+    }
+    return -1;
+  }
+
+  /**
+   * Parses the window at {@code p}, taking it from {@code windowCache} if it was parsed before. While
+   * the first item of the window neither completes nor fails, i.e. is longer than the window, the
+   * window grows by another {@link #WINDOW_CHARS}; only such an item is ever parsed in more than
+   * one window's worth of text.
+   */
+  private Window parseWindow(EbnfTestParser parser, Set<String> itemRules, CharSequence text, int p,
+                             @Nullable EbnfTestGrammar grammar, @Nullable EbnfWindowCache windowCache,
+                             @Nullable Set<String> sync) {
+    int n = text.length();
+    int end = windowEnd(text, p);
+    while (true) {
+      String window = text.subSequence(p, end).toString();
+      Run run = windowCache != null ? windowCache.get(grammar, window) : null;
+      if (run == null) {
+        run = sync != null
+            ? parseItems(parser, itemRules, window, null, null, sync)
+            : parse(parser, itemRules, window, null, null);
+        if (windowCache != null) windowCache.put(grammar, window, run);
+      }
+      Window w = new Window(run, end);
+      if (end == n || w.lastCheckpoint() > 0 || hasError(run)) return w;
+      end = windowEnd(text, end);
+    }
+  }
+
+  private static boolean hasError(Run run) {
+    for (MatchResult m : run.matches) {
+      if (!m.isMatch) return true;
+    }
+    return false;
+  }
+
+  private static int firstError(Run run, int limit) {
+    for (MatchResult m : run.matches) {
+      if (!m.isMatch && m.startOffset < limit) return m.startOffset;
+    }
+    return -1;
+  }
+
+  /** About {@link #WINDOW_CHARS} from {@code start}, extended to the end of that line if it is near. */
+  private static int windowEnd(CharSequence text, int start) {
+    int n = text.length();
+    int end = Math.min(n, start + WINDOW_CHARS);
+    int limit = Math.min(n, end + WINDOW_CHARS);
+    while (end < limit && text.charAt(end - 1) != '\n') end++;
+    return end;
+  }
+
+  /**
+   * Start of the item in front of the one containing the first change. Going back one more item
+   * lets the parser see the changed text as lookahead of the last item it takes over.
+   */
+  private static int findResumeOffset(Run last, String text) {
+    String old = last.text;
+    int limit = Math.min(old.length(), text.length());
+    int changed = 0;
+    while (changed < limit && old.charAt(changed) == text.charAt(changed)) changed++;
+
+    int[] checkpoints = last.checkpoints;
+    int k = -1;
+    while (k + 1 < checkpoints.length && checkpoints[k + 1] < changed) k++;
+    return k >= 1 ? checkpoints[k - 1] : 0;
+  }
+
+  private static Run join(Run last, int resumeAt, Run suffix) {
+    List<MatchResult> matches = new ArrayList<>();
+    for (MatchResult m : last.matches) {
+      if (m.startOffset >= resumeAt) continue;
+      if (m.isMatch) {
+        matches.add(m.endOffset <= resumeAt ? m : new MatchResult(m.startOffset, resumeAt, true));
+      } else if (m.endOffset <= resumeAt) {
+        // Only recovering runs have red ranges in front of a checkpoint
+        matches.add(m);
+      }
+    }
+    for (MatchResult m : suffix.matches) {
+      matches.add(new MatchResult(m.startOffset + resumeAt, m.endOffset + resumeAt, m.isMatch));
+    }
+
+    int kept = 0;
+    while (kept < last.checkpoints.length && last.checkpoints[kept] < resumeAt) kept++;
+    int[] checkpoints = Arrays.copyOf(last.checkpoints, kept + suffix.checkpoints.length);
+    for (int i = 0; i < suffix.checkpoints.length; i++) {
+      checkpoints[kept + i] = suffix.checkpoints[i] + resumeAt;
+    }
+    return new Run(matches, checkpoints);
+  }
+
+  /**
+   * Parses an item-sequence text, recovering from errors if {@code sync} is set. Behind an error,
+   * parsing continues window by window, so each error costs about one window instead of a parse
+   * of the whole remaining text. A {@code profile} and a {@code tree} only receive the events of
+   * the part in front of the first error.
+   */
+  private Run parseItems(EbnfTestParser parser, Set<String> itemRules, String text,
+                         @Nullable EbnfRuleProfile profile, @Nullable EbnfParseEventLog tree,
+                         @Nullable Set<String> sync) {
+    Run run = parse(parser, itemRules, text, profile, tree);
+    if (sync == null) return run;
+
+    List<MatchResult> matches = new ArrayList<>();
+    int[] checkpoints = new int[16];
+    int checkpointCount = 0;
+    int n = text.length();
+    int p = 0;
+    int end = n;
+    while (true) {
+      int lastCheckpoint = run.checkpoints.length > 0 ? run.checkpoints[run.checkpoints.length - 1] : 0;
+      boolean all = end == n;
+      // Behind the last checkpoint the window may have cut an item off - unless it failed before
+      int advance = all || lastCheckpoint == 0 ? end - p : lastCheckpoint;
+      int error = -1;
+      for (MatchResult m : run.matches) {
+        if (!m.isMatch) {
+          if (m.startOffset < advance) error = m.startOffset + p;
+        } else if (m.endOffset <= advance) {
+          matches.add(new MatchResult(m.startOffset + p, m.endOffset + p, true));
+        } else if (m.startOffset < advance) {
+          matches.add(new MatchResult(m.startOffset + p, advance + p, true));
+        }
+      }
+      for (int c : run.checkpoints) {
+        if (c >= advance && !all) break;
+        if (checkpointCount == checkpoints.length) checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+        checkpoints[checkpointCount++] = c + p;
+      }
+
+      if (error >= 0) {
+        p = syncEnd(text, error, sync);
+        matches.add(new MatchResult(error, p, false));
+      } else {
+        p += advance;
+      }
+      if (p >= n) break;
+      Window w = parseWindow(parser, itemRules, text, p, null, null, null);
+      run = w.run;
+      end = w.end;
+    }
+    return new Run(matches, Arrays.copyOf(checkpoints, checkpointCount));
+  }
+
+  /**
+   * End of the first sync token at or behind {@code from}. The search stops at the end of the
+   * window starting at {@code from}; without a sync token up to there, parsing resumes at that
+   * line end.
+   */
+  private static int syncEnd(String text, int from, Set<String> syncTokens) {
+    int limit = windowEnd(text, from);
+    for (int i = from; i < limit; i++) {
+      for (String token : syncTokens) {
+        if (text.startsWith(token, i)) return Math.min(text.length(), i + token.length());
+      }
+    }
+    return limit;
+  }
+
+  private Run parse(EbnfTestParser parser, @Nullable Set<String> itemRules, String testText,
+                    @Nullable EbnfRuleProfile profile, @Nullable EbnfParseEventLog tree) {
+    List<MatchResult> results = new ArrayList<>();
+    ItemCollector items = itemRules != null ? new ItemCollector(itemRules) : null;
+    ParseNodeEventListener listener = both(both(items, profile), tree);
+    int[] checkpoints = NO_CHECKPOINTS;
+    try {
+      // Gesamter Parse
+      if (profile != null) profile.start();
+      int rFull = parser.parse(testText, listener);
+
+      // Segmente aus genau der Token-Queue, die der Parse benutzt hat
+      TokenQueue testTokens = parser.getParser().getTokenQueue();
+      int[] segs = tokenSegments(testText, testTokens);
+      int segCount = segs.length / 2;
+      if (tree != null) tree.setTokenSegments(segs);
+
+      int accepted = acceptedTokens(rFull, testTokens, segCount);
+      if (items != null) checkpoints = items.checkpoints(segs, accepted);
+
+      // Rot (verzoegert): nur, wenn wirklich Fehler/Extra vorliegt (also NICHT -2)
+      boolean shouldPaintRed = isRejected(rFull, testTokens);
+
+      int greenEnd = (accepted > 0) ? segs[(accepted - 1) * 2 + 1] : 0;
+      if (segCount > maxHighlightSegments) {
+        if (greenEnd > 0) results.add(new MatchResult(0, greenEnd, true));
+      } else {
+        // Gruen: genau die akzeptierten Token-Segmente
+        for (int i = 0; i < accepted; i++) {
+          if (testTokens.isUnhandledWhitespace(i)) continue;
+          results.add(new MatchResult(segs[i * 2], segs[i * 2 + 1], true));
+        }
+      }
+
+      if (shouldPaintRed && greenEnd < testText.length()) {
+        results.add(new MatchResult(greenEnd, testText.length(), false));
+      }
+
+    } catch (ProcessCanceledException e) {
+      throw e;
+    } catch (Exception e) {
+      System.err.println("Error parsing: " + e.getMessage());
+      results.clear();
+      results.add(new MatchResult(0, testText.length(), false));
+      checkpoints = NO_CHECKPOINTS;
+    }
+    return new Run(results, checkpoints);
+  }
+
+  private static @Nullable ParseNodeEventListener both(@Nullable ParseNodeEventListener a,
+                                                      @Nullable ParseNodeEventListener b) {
+    if (a == null) return b;
+    if (b == null) return a;
+    return new ParseNodeEventListener() {
+      @Override
+      public void parseNodeEventOccurred(ParseNodeEvent e) {
+        a.parseNodeEventOccurred(e);
+        b.parseNodeEventOccurred(e);
+      }
+    };
+  }
+
+  /** Number of leading tokens the parser accepted, given the result of {@code parse}. */
+  static int acceptedTokens(int rFull, TokenQueue testTokens, int segCount) {
+    if (rFull == testTokens.rawSize()) {
+      // kompletter Erfolg
+      return segCount;
+    } else if (rFull >= 0 && rFull < testTokens.rawSize()) {
+      // Parser hat n akzeptiert und dann Schluss gemacht -> n ist Praefix
+      return Math.min(rFull, segCount);
+    } else if (rFull == -2) {
+      // EndOfQueue zu frueh: alles bisherige ist akzeptiert
+      return segCount;
+    }
+    // -1, -100 oder sonstiger Fehler: via Praefix-Suche ermitteln
+    return Math.min(testTokens.getLastTokenFound(), segCount);
+  }
+
+  /** True if the input contains an error or extra text; an input that just ends early is not rejected. */
+  static boolean isRejected(int rFull, TokenQueue testTokens) {
+    return (rFull == -1 || rFull == -100) ||
+        (rFull >= 0 && rFull < testTokens.rawSize());
+  }
+
+  /**
+   * {@code (start, end)} of every token. The lexer slices the text without gaps, so the offsets
+   * are running sums of the token lengths; the text is only searched if the lengths do not add
+   * up to the text, which would mean the lexer dropped characters.
+   */
+  static int[] tokenSegments(String text, TokenQueue tokens) {
+    List<String> list = tokens.getTokens();
+    int[] segs = new int[list.size() * 2];
+    int count = 0;
+    int cursor = 0;
+    for (String tok : list) {
+      if (tok == null) break;
+      segs[count * 2] = cursor;
+      cursor += tok.length();
+      segs[count * 2 + 1] = cursor;
+      count++;
+    }
+    if (cursor == text.length()) return count * 2 == segs.length ? segs : Arrays.copyOf(segs, count * 2);
+    return searchTokenSegments(text, list);
+  }
+
+  private static int[] searchTokenSegments(String text, List<String> tokens) {
+    int[] segs = new int[tokens.size() * 2];
+    int count = 0;
+    int cursor = 0;
+    for (String tok : tokens) {
+      if (tok == null) break;
+      int start = text.startsWith(tok, cursor) ? cursor : text.indexOf(tok, cursor);
+      if (start < 0) break;
+      segs[count * 2] = start;
+      segs[count * 2 + 1] = cursor = start + tok.length();
+      count++;
+    }
+    return Arrays.copyOf(segs, count * 2);
+  }
+
+  /**
+   * Records the token ranges matched by the item rules. A rule that matches several times at the
+   * same position reports the outermost match last, so the latest range per start wins.
+   */
+  private static final class ItemCollector implements ParseNodeEventListener {
+    private final Set<String> itemRules;
+    private final Map<Integer, Integer> endByStart = new HashMap<>();
+
+    ItemCollector(Set<String> itemRules) {
+      this.itemRules = itemRules;
+    }
+
+    @Override
+    public void parseNodeEventOccurred(ParseNodeEvent e) {
+      if (!itemRules.contains(e.getNode().getName())) return;
+      endByStart.put(e.getTrimmedFromPtr(), e.getTrimmedToPtr());
+    }
+
+    /** Character offsets where top-level items start, limited to the accepted tokens. */
+    int[] checkpoints(int[] segs, int accepted) {
+      int[] starts = new int[endByStart.size()];
+      int n = 0;
+      for (int start : endByStart.keySet()) starts[n++] = start;
+      Arrays.sort(starts);
+
+      int[] result = new int[n];
+      int count = 0;
+      int nextStart = -1;
+      for (int i = 0; i < n; i++) {
+        int from = starts[i];
+        int to = endByStart.get(from);
+        if (from < nextStart) continue; // nested in the previous item
+        if (to > accepted || from * 2 >= segs.length) break;
+        result[count++] = segs[from * 2];
+        nextStart = to;
+      }
+      return Arrays.copyOf(result, count);
+    }
+  }
+
+  /** Error recovery setting; the default sync tokens come from the grammar of each run. */
+  private record Recovery(boolean enabled, @Nullable Set<String> customTokens) {
+    static final Recovery OFF = new Recovery(false, null);
+
+    @Nullable Set<String> tokens(EbnfTestGrammar grammar) {
+      if (!enabled) return null;
+      if (customTokens != null) return customTokens;
+      Set<String> terminators = grammar.getItemTerminators();
+      return terminators.isEmpty() ? Set.of("\n") : terminators;
+    }
+  }
+
+  /** Result of a window parse; {@code end} is the text offset where the window ended. */
+  private record Window(Run run, int end) {
+    int lastCheckpoint() {
+      return run.checkpoints.length > 0 ? run.checkpoints[run.checkpoints.length - 1] : 0;
+    }
+  }
+
+  static final class Run {
+    final List<MatchResult> matches;
+    final int[] checkpoints;
+    EbnfTestGrammar grammar;
+    String text;
+    Set<String> sync;
+
+    Run(List<MatchResult> matches, int[] checkpoints) {
+      this.matches = matches;
+      this.checkpoints = checkpoints;
+    }
+  }
+
+  static final class MatchResult {
+    final int startOffset, endOffset; final boolean isMatch;
+    MatchResult(int s, int e, boolean ok) { this.startOffset = s; this.endOffset = e; this.isMatch = ok; }
+  }
+}
@@ -1,6 +1,14 @@
 package com.sverko.ebnf4j.toolwindow;
 
+import com.intellij.icons.AllIcons;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.actionSystem.ActionManager;
+import com.intellij.openapi.actionSystem.ActionToolbar;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.DefaultActionGroup;
+import com.intellij.openapi.actionSystem.ToggleAction;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.editor.Document;
@@ -8,34 +16,46 @@ import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.editor.event.DocumentEvent;
 import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.editor.ScrollType;
 import com.intellij.openapi.editor.markup.HighlighterLayer;
 import com.intellij.openapi.editor.markup.HighlighterTargetArea;
 import com.intellij.openapi.editor.markup.TextAttributes;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.fileEditor.FileEditorManagerEvent;
 import com.intellij.openapi.fileEditor.FileEditorManagerListener;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.ui.SimpleToolWindowPanel;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowManager;
 import com.intellij.ui.JBColor;
+import com.intellij.ui.JBSplitter;
+import com.intellij.ui.components.JBTabbedPane;
 import com.intellij.util.ui.JBUI;
-import com.sverko.ebnf.EbnfParserGenerator;
-import com.sverko.ebnf.Lexer;
-import com.sverko.ebnf.Parser;
-import com.sverko.ebnf.TokenQueue;
 import com.sverko.ebnf4j.EbnfFileType;
+import com.sverko.ebnf4j.annotator.EbnfCancellation;
+import com.sverko.ebnf4j.model.EbnfGrammarModel;
+import com.sverko.ebnf4j.model.EbnfGrammarModelService;
+import com.sverko.ebnf4j.model.EbnfTestGrammar;
+import com.sverko.ebnf4j.model.EbnfTestParserCache;
+import com.sverko.ebnf4j.toolwindow.EbnfLiveMatcher.MatchResult;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import com.intellij.util.Alarm;
-import com.intellij.openapi.editor.markup.RangeHighlighter;
+import com.intellij.util.concurrency.AppExecutorUtil;
 
 import javax.swing.*;
 import java.awt.*;
 import java.util.*;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class EbnfLiveTesterPanel implements Disposable {
 
@@ -43,7 +63,16 @@ public class EbnfLiveTesterPanel implements Disposable {
   private final SimpleToolWindowPanel mainPanel;
 
   private final JPanel centerPanel;
-  private final Map<VirtualFile, Editor> testEditorsBySchema = new HashMap<>();
+  // Only the most recently shown schemas keep an editor, the other test texts are in the store
+  private static final int MAX_LIVE_EDITORS = 4;
+  private final Map<VirtualFile, Editor> testEditorsBySchema = new LinkedHashMap<>(MAX_LIVE_EDITORS, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<VirtualFile, Editor> eldest) {
+      if (size() <= MAX_LIVE_EDITORS) return false;
+      releaseTestEditor(eldest.getKey(), eldest.getValue());
+      return true;
+    }
+  };
   private  Editor currentTestEditor;
 
   private  VirtualFile currentSchemaFile;
@@ -54,15 +83,43 @@ public class EbnfLiveTesterPanel implements Disposable {
 
   private static final int ERROR_DEBOUNCE_MS = 1000;
   private static final int PARSE_DEBOUNCE_MS = 200;
-  private static final int MAX_HIGHLIGHT_SEGMENTS = 20_000;
+  // Memory cap only: per-token ranges up to here, EbnfMatchHighlights paints them once there are
+  // more than RENDERER_THRESHOLD; above the cap a parse reports one collapsed green range
+  private static final int MAX_HIGHLIGHT_SEGMENTS = 1_000_000;
   private final Alarm errorAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
   private final Alarm parseAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, this);
 
-  private final List<RangeHighlighter> greenHighlighters = new ArrayList<>();
-  private final List<RangeHighlighter> redHighlighters   = new ArrayList<>();
-  private final Object parserLock = new Object();
-  private volatile  Parser cachedParser;
-  private volatile long cachedSchemaStamp = -1;
+  // Profiling: opt-in, every parse then reports all rule events to a fresh profile
+  private final JBSplitter splitter = new JBSplitter(true, 0.7f);
+  private final EbnfProfilerView profilerView;
+  private volatile boolean profiling;
+
+  // Parse tree: opt-in like profiling, shown next to the profile below the test editor
+  private final JBTabbedPane bottomTabs = new JBTabbedPane();
+  private final EbnfParseTreeView treeView;
+  private volatile boolean showingTree;
+
+  // Error recovery: resync behind the item terminators of the grammar, or behind the tokens
+  // entered by the user; line ends if the grammar has no terminators
+  private volatile boolean recovering;
+  private volatile Set<String> customSyncTokens;
+
+  // Window cache: opt-in, window results are kept up to WINDOW_CACHE_MAX_BYTES. The status line
+  // shows the parser cache always and the window cache while it is on
+  private static final long WINDOW_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+  private final JLabel cacheStatus = new JLabel();
+  private volatile EbnfWindowCache windowCache;
+
+  // Datei-Modus: Eingabe wird gemappt gelesen, gezeigt wird nur ein Fenster um den ersten Fehler
+  private static final int FILE_VIEW_BEFORE = 16 * 1024;
+  private static final int FILE_VIEW_CHARS = 64 * 1024;
+  private final JPanel filePanel = new JPanel(new BorderLayout());
+  private final JLabel fileStatus = new JLabel();
+  private volatile Path testFile;
+  private Editor fileViewer;
+
+  private final AtomicInteger parseGeneration = new AtomicInteger();
+  private final EbnfLiveMatcher matcher = new EbnfLiveMatcher(MAX_HIGHLIGHT_SEGMENTS);
 
   // Highlighting
   private static final TextAttributes MATCH_ATTRIBUTES = new TextAttributes(
@@ -70,6 +127,9 @@ public class EbnfLiveTesterPanel implements Disposable {
   private static final TextAttributes ERROR_ATTRIBUTES = new TextAttributes(
       Color.WHITE, new Color(255, 182, 193), null, null, Font.PLAIN); // hellrot
 
+  private final EbnfMatchHighlights greenHighlights = new EbnfMatchHighlights(MATCH_ATTRIBUTES);
+  private final EbnfMatchHighlights redHighlights = new EbnfMatchHighlights(ERROR_ATTRIBUTES);
+
   public EbnfLiveTesterPanel(Project project) {
     this.project = project;
     mainPanel = new SimpleToolWindowPanel(true, true);
@@ -91,8 +151,16 @@ public class EbnfLiveTesterPanel implements Disposable {
     centerPanel.add(placeholder("Oeffne eine .ebnf-Datei – hier erscheint dann dein zugehoeriger Testtext."),
         BorderLayout.CENTER);
 
-    root.add(centerPanel, BorderLayout.CENTER);
+    profilerView = new EbnfProfilerView(project);
+    treeView = new EbnfParseTreeView(this::navigateTo);
+    splitter.setFirstComponent(centerPanel);
+    root.add(splitter, BorderLayout.CENTER);
+    fileStatus.setBorder(JBUI.Borders.empty(4, 8));
+    filePanel.add(fileStatus, BorderLayout.NORTH);
+    cacheStatus.setBorder(JBUI.Borders.empty(2, 8));
+    root.add(cacheStatus, BorderLayout.SOUTH);
     mainPanel.setContent(root);
+    mainPanel.setToolbar(createToolbar().getComponent());
 
     project.getMessageBus().connect(this).subscribe(
         FileEditorManagerListener.FILE_EDITOR_MANAGER,
@@ -114,6 +182,151 @@ public class EbnfLiveTesterPanel implements Disposable {
     return true;
   }
 
+  private ActionToolbar createToolbar() {
+    DefaultActionGroup group = new DefaultActionGroup();
+    group.add(new ToggleAction("Test File...", "Eine Datei von der Platte statt des Testtexts parsen", AllIcons.Actions.MenuOpen) {
+      @Override
+      public boolean isSelected(@NotNull AnActionEvent e) { return testFile != null; }
+
+      @Override
+      public void setSelected(@NotNull AnActionEvent e, boolean state) {
+        if (state) chooseTestFile(); else leaveFileMode();
+      }
+
+      @Override
+      public @NotNull ActionUpdateThread getActionUpdateThread() { return ActionUpdateThread.EDT; }
+    });
+    group.add(new ToggleAction("Profile Rules", "Regel-Statistik fuer jeden Parse sammeln", AllIcons.Actions.Profile) {
+      @Override
+      public boolean isSelected(@NotNull AnActionEvent e) { return profiling; }
+
+      @Override
+      public void setSelected(@NotNull AnActionEvent e, boolean state) { setProfiling(state); }
+
+      @Override
+      public @NotNull ActionUpdateThread getActionUpdateThread() { return ActionUpdateThread.EDT; }
+    });
+    group.add(new ToggleAction("Parse Tree", "Parse-Baum des Testtexts anzeigen", AllIcons.Actions.ShowAsTree) {
+      @Override
+      public boolean isSelected(@NotNull AnActionEvent e) { return showingTree; }
+
+      @Override
+      public void setSelected(@NotNull AnActionEvent e, boolean state) { setShowingTree(state); }
+
+      @Override
+      public @NotNull ActionUpdateThread getActionUpdateThread() { return ActionUpdateThread.EDT; }
+    });
+    group.add(new ToggleAction("Error Recovery", "Nach einem Fehler am naechsten Sync-Token weiterparsen", AllIcons.Actions.ForceRefresh) {
+      @Override
+      public boolean isSelected(@NotNull AnActionEvent e) { return recovering; }
+
+      @Override
+      public void setSelected(@NotNull AnActionEvent e, boolean state) {
+        recovering = state;
+        matcher.setRecovery(recovering, customSyncTokens);
+        updateHighlighting();
+      }
+
+      @Override
+      public @NotNull ActionUpdateThread getActionUpdateThread() { return ActionUpdateThread.EDT; }
+    });
+    group.add(new AnAction("Sync Tokens...", "Tokens festlegen, an denen nach einem Fehler weitergeparst wird", AllIcons.General.Settings) {
+      @Override
+      public void actionPerformed(@NotNull AnActionEvent e) { editSyncTokens(); }
+
+      @Override
+      public void update(@NotNull AnActionEvent e) { e.getPresentation().setEnabled(recovering); }
+
+      @Override
+      public @NotNull ActionUpdateThread getActionUpdateThread() { return ActionUpdateThread.EDT; }
+    });
+    group.add(new ToggleAction("Cache Windows", "Parse-Ergebnisse pro Fenster merken (begrenzter Speicher)", AllIcons.Actions.Lightning) {
+      @Override
+      public boolean isSelected(@NotNull AnActionEvent e) { return windowCache != null; }
+
+      @Override
+      public void setSelected(@NotNull AnActionEvent e, boolean state) { setCachingWindows(state); }
+
+      @Override
+      public @NotNull ActionUpdateThread getActionUpdateThread() { return ActionUpdateThread.EDT; }
+    });
+    group.add(new AnAction("Export Profile as CSV", "Regel-Statistik als CSV speichern", AllIcons.ToolbarDecorator.Export) {
+      @Override
+      public void actionPerformed(@NotNull AnActionEvent e) { profilerView.exportCsv(); }
+
+      @Override
+      public void update(@NotNull AnActionEvent e) { e.getPresentation().setEnabled(profiling && !profilerView.isEmpty()); }
+
+      @Override
+      public @NotNull ActionUpdateThread getActionUpdateThread() { return ActionUpdateThread.EDT; }
+    });
+    ActionToolbar toolbar = ActionManager.getInstance().createActionToolbar("EbnfLiveTester", group, true);
+    toolbar.setTargetComponent(centerPanel);
+    return toolbar;
+  }
+
+  private void setProfiling(boolean enabled) {
+    profiling = enabled;
+    profilerView.clear();
+    updateBottomTabs();
+    if (enabled) updateHighlighting();
+  }
+
+  private void setShowingTree(boolean enabled) {
+    showingTree = enabled;
+    treeView.clear();
+    updateBottomTabs();
+    if (enabled) updateHighlighting();
+  }
+
+  private void editSyncTokens() {
+    Set<String> current = customSyncTokens;
+    String input = Messages.showInputDialog(project,
+        "Sync-Tokens, durch Leerzeichen getrennt (leer = Abschluss-Terminale der Grammatik):",
+        "Sync Tokens", null, current != null ? String.join(" ", current) : "", null);
+    if (input == null) return;
+    Set<String> tokens = new LinkedHashSet<>();
+    for (String token : input.trim().split("\\s+")) {
+      if (!token.isEmpty()) tokens.add(token);
+    }
+    customSyncTokens = tokens.isEmpty() ? null : tokens;
+    matcher.setRecovery(recovering, customSyncTokens);
+    updateHighlighting();
+  }
+
+  private void updateBottomTabs() {
+    bottomTabs.removeAll();
+    if (profiling) bottomTabs.addTab("Profil", profilerView.getComponent());
+    if (showingTree) bottomTabs.addTab("Parse-Baum", treeView.getComponent());
+    splitter.setSecondComponent(bottomTabs.getTabCount() > 0 ? bottomTabs : null);
+  }
+
+  private void navigateTo(int offset) {
+    Editor editor = currentTestEditor;
+    if (editor == null || offset > editor.getDocument().getTextLength()) return;
+    editor.getCaretModel().moveToOffset(offset);
+    editor.getScrollingModel().scrollToCaret(ScrollType.CENTER);
+  }
+
+  private void setCachingWindows(boolean enabled) {
+    windowCache = enabled ? new EbnfWindowCache(WINDOW_CACHE_MAX_BYTES) : null;
+    matcher.setWindowCache(windowCache);
+    updateCacheStatus();
+    if (enabled) updateHighlighting();
+  }
+
+  private void updateCacheStatus() {
+    EbnfTestParserCache parsers = EbnfTestParserCache.getInstance();
+    String status = String.format("Parser-Cache: %d Treffer, %d Fehlgriffe, %d Grammatiken",
+        parsers.getHitCount(), parsers.getMissCount(), parsers.size());
+    EbnfWindowCache m = windowCache;
+    if (m != null) {
+      status += String.format(" - Fenster-Cache: %.0f%% Treffer, %.1f / %d MB",
+          m.getHitRate() * 100, m.getBytes() / (1024.0 * 1024.0), m.getMaxBytes() / (1024 * 1024));
+    }
+    cacheStatus.setText(status);
+  }
+
   private static JComponent placeholder(String text) {
     JLabel lbl = new JLabel(text);
     lbl.setHorizontalAlignment(SwingConstants.LEFT);
@@ -141,6 +354,9 @@ public class EbnfLiveTesterPanel implements Disposable {
     }
     if (vf.equals(currentSchemaFile)) return;
 
+    if (currentSchemaFile != null && currentTestEditor != null) {
+      saveTestText(currentSchemaFile, currentTestEditor);
+    }
     currentSchemaFile = vf;
 
     Document schemaDoc = FileDocumentManager.getInstance().getDocument(vf);
@@ -148,8 +364,6 @@ public class EbnfLiveTesterPanel implements Disposable {
 
     detachSchemaListener();
     currentSchemaDoc = schemaDoc;
-    cachedParser = null;
-    cachedSchemaStamp = -1;
 
     updateToolWindowTitle(vf.getName());
 
@@ -160,7 +374,8 @@ public class EbnfLiveTesterPanel implements Disposable {
 
     // Test-Editor fuer dieses Schema holen/erstellen
     Editor testEditor = testEditorsBySchema.computeIfAbsent(vf, file -> {
-      Document d = EditorFactory.getInstance().createDocument("");
+      Document d = EditorFactory.getInstance().createDocument(
+          EbnfTestBufferStore.getInstance(project).load(file.getPath()));
       return EditorFactory.getInstance().createEditor(
           d, project, com.intellij.openapi.fileTypes.PlainTextFileType.INSTANCE, false);
     });
@@ -168,10 +383,108 @@ public class EbnfLiveTesterPanel implements Disposable {
     testEditor.getSettings().setVirtualSpace(true);
     testEditor.getSettings().setUseTabCharacter(true);
     swapRightEditor(testEditor);
+    if (testFile != null) showFilePanel();
+
+    updateHighlighting();
+  }
 
+  // -------- Datei-Modus: Testeingabe ist eine Datei auf der Platte --------
+  private void chooseTestFile() {
+    VirtualFile vf = FileChooser.chooseFile(FileChooserDescriptorFactory.createSingleFileDescriptor(), project, null);
+    if (vf == null) return;
+    testFile = vf.toNioPath();
+    fileStatus.setText("Parse " + vf.getPresentableUrl() + " ...");
+    showFilePanel();
     updateHighlighting();
   }
 
+  private void leaveFileMode() {
+    testFile = null;
+    swapRightEditor(currentTestEditor);
+    updateHighlighting();
+  }
+
+  private void showFilePanel() {
+    if (fileViewer == null) {
+      fileViewer = EditorFactory.getInstance().createViewer(EditorFactory.getInstance().createDocument(""), project);
+      filePanel.add(fileViewer.getComponent(), BorderLayout.CENTER);
+    }
+    errorAlarm.cancelAllRequests();
+    removeGreenHighlighters();
+    removeRedHighlighters();
+    centerPanel.removeAll();
+    centerPanel.add(filePanel, BorderLayout.CENTER);
+    centerPanel.revalidate();
+    centerPanel.repaint();
+  }
+
+  private void parseFileInBackground(Document schemaDoc, Path file, EbnfCancellation cancellation) {
+    TextSnapshot schemaSnap = ReadAction.compute(() ->
+        new TextSnapshot(schemaDoc.getModificationStamp(), schemaDoc.getText()));
+    EbnfGrammarModel model = getModel(schemaDoc, schemaSnap);
+    EbnfTestGrammar grammar = model.getTestGrammar();
+    if (grammar == null) {
+      ApplicationManager.getApplication().invokeLater(() -> fileStatus.setText("Aus dem Schema kann kein Parser erzeugt werden."));
+      return;
+    }
+
+    CharSequence input;
+    try {
+      input = EbnfMappedText.open(file);
+    } catch (Exception e) {
+      ApplicationManager.getApplication().invokeLater(() -> fileStatus.setText("Datei nicht lesbar: " + e.getMessage()));
+      return;
+    }
+
+    long started = System.nanoTime();
+    int error;
+    try {
+      error = matcher.firstError(grammar, model.getTopLevelItemRules(), input, cancellation);
+    } catch (ProcessCanceledException e) {
+      return;
+    }
+    long millis = (System.nanoTime() - started) / 1_000_000;
+
+    // Nur ein Fenster um den ersten Fehler wird angezeigt
+    int n = input.length();
+    int from = Math.max(0, (error >= 0 ? error : 0) - FILE_VIEW_BEFORE);
+    int to = Math.min(n, from + FILE_VIEW_CHARS);
+    int errorInWindow = error >= 0 ? Math.min(error, to) - from : -1;
+    String before = StringUtil.convertLineSeparators(input.subSequence(from, errorInWindow >= 0 ? from + errorInWindow : to).toString());
+    String after = errorInWindow >= 0 ? StringUtil.convertLineSeparators(input.subSequence(from + errorInWindow, to).toString()) : "";
+    int line = error >= 0 ? countLines(input, error) + 1 : -1;
+
+    String status = error < 0
+        ? String.format("%s: akzeptiert (%,d Zeichen, %d ms)", file.getFileName(), n, millis)
+        : String.format("%s: Fehler bei Offset %,d, Zeile %,d (%,d Zeichen, %d ms) - gezeigt: %,d-%,d",
+            file.getFileName(), error, line, n, millis, from, to);
+    ApplicationManager.getApplication().invokeLater(() -> {
+      if (!file.equals(testFile) || fileViewer == null) return;
+      fileStatus.setText(status);
+      showFileWindow(before, after, errorInWindow >= 0);
+    });
+  }
+
+  private void showFileWindow(String before, String after, boolean hasError) {
+    Document doc = fileViewer.getDocument();
+    ApplicationManager.getApplication().runWriteAction(() -> doc.setText(before + after));
+    fileViewer.getMarkupModel().removeAllHighlighters();
+    if (hasError && !after.isEmpty()) {
+      fileViewer.getMarkupModel().addRangeHighlighter(before.length(), before.length() + after.length(),
+          HighlighterLayer.SELECTION - 1, ERROR_ATTRIBUTES, HighlighterTargetArea.EXACT_RANGE);
+    }
+    fileViewer.getCaretModel().moveToOffset(before.length());
+    fileViewer.getScrollingModel().scrollToCaret(ScrollType.CENTER);
+  }
+
+  private static int countLines(CharSequence text, int end) {
+    int lines = 0;
+    for (int i = 0; i < end; i++) {
+      if (text.charAt(i) == '\n') lines++;
+    }
+    return lines;
+  }
+
   private void updateToolWindowTitle( String fileName) {
     ToolWindow tw = ToolWindowManager.getInstance(project).getToolWindow("EBNF Live Tester");
     if (tw == null) return;
@@ -222,13 +535,25 @@ public class EbnfLiveTesterPanel implements Disposable {
 
   // -------- Parsing & Highlight --------
   private void updateHighlighting() {
+    int generation = parseGeneration.incrementAndGet();
     parseAlarm.cancelAllRequests();
-    parseAlarm.addRequest(this::parseInBackground, PARSE_DEBOUNCE_MS);
+    // The alarm runs its requests one after another - parse on the shared pool instead,
+    // so a new request never waits for an older, slower parse to finish
+    parseAlarm.addRequest(() -> AppExecutorUtil.getAppExecutorService()
+        .execute(() -> parseInBackground(generation)), PARSE_DEBOUNCE_MS);
   }
 
-  private void parseInBackground() {
+  private void parseInBackground(int generation) {
+    if (generation != parseGeneration.get()) return;
     Document schemaDoc = currentSchemaDoc;
     Editor testEditor = currentTestEditor;
+    Path file = testFile;
+    // Every newer request (schema or test edit) cancels this run at its next parse-node event
+    EbnfCancellation cancellation = new EbnfCancellation(() -> generation != parseGeneration.get());
+    if (schemaDoc != null && file != null) {
+      parseFileInBackground(schemaDoc, file, cancellation);
+      return;
+    }
     if (schemaDoc == null || testEditor == null) return;
 
     TextSnapshot schemaSnap = ReadAction.compute(() ->
@@ -241,208 +566,90 @@ public class EbnfLiveTesterPanel implements Disposable {
       return;
     }
 
-    Parser parser = getOrBuildParser(schemaSnap);
-    if (parser == null) {
+    EbnfGrammarModel model = getModel(schemaDoc, schemaSnap);
+    EbnfTestGrammar grammar = model.getTestGrammar();
+    if (grammar == null) {
       ApplicationManager.getApplication().invokeLater(this::clearHighlighting);
       return;
     }
 
+    // Resumes from the last unchanged top-level item if the grammar allows it
+    EbnfRuleProfile profile = profiling ? new EbnfRuleProfile() : null;
+    EbnfParseEventLog tree = showingTree ? new EbnfParseEventLog(testSnap.text) : null;
     List<MatchResult> matches;
-    synchronized (parserLock) {
-      matches = parseAndMatch(parser, testSnap.text);
+    try {
+      matches = matcher.match(grammar, model.getTopLevelItemRules(), testSnap.text, profile, tree, cancellation);
+    } catch (ProcessCanceledException e) {
+      return;
+    }
+    if (profile != null) {
+      ApplicationManager.getApplication().invokeLater(() -> {
+        if (profiling) profilerView.show(profile);
+      });
+    }
+    if (tree != null) {
+      // Linking is a single pass over the events; tree nodes are only created when expanded
+      tree.buildTree();
+      ApplicationManager.getApplication().invokeLater(() -> {
+        if (showingTree && generation == parseGeneration.get()) treeView.show(tree);
+      });
     }
 
     ApplicationManager.getApplication().invokeLater(() -> {
       if (currentSchemaDoc == null || currentTestEditor == null) return;
       if (currentSchemaDoc.getModificationStamp() != schemaSnap.stamp) return;
+      updateCacheStatus();
       if (currentTestEditor.getDocument().getModificationStamp() != testSnap.stamp) return;
       applyHighlightsWithDelay(matches);
     });
   }
 
-  private  Parser getOrBuildParser(TextSnapshot schemaSnap) {
-    synchronized (parserLock) {
-      if (cachedParser != null && cachedSchemaStamp == schemaSnap.stamp) {
-        return cachedParser;
-      }
-      try {
-        Lexer schemaLexer = new Lexer(Set.of("\n","\t","\s","{:"));
-        TokenQueue schemaTokens = schemaLexer.lexText(schemaSnap.text);
-
-        EbnfParserGenerator generator = new EbnfParserGenerator();
-        Parser parser = generator.getParser(schemaTokens, true);
-        cachedParser = parser;
-        cachedSchemaStamp = schemaSnap.stamp;
-        return parser;
-      } catch (Exception e) {
-        System.err.println("Error building parser: " + e.getMessage());
-        cachedParser = null;
-        cachedSchemaStamp = -1;
-        return null;
-      }
-    }
-  }
-
-  private List<MatchResult> parseAndMatch(Parser parser, String testText) {
-    List<MatchResult> results = new ArrayList<>();
-    try {
-      // Gesamter Parse
-      int rFull = parser.parse(testText);
-
-      // Test-Tokens + Segmente (mit dem Lexer des Parsers, gleiche Flags)
-      TokenQueue testTokens = parser.getLexer().lexText(testText);
-      List<int[]> segs = lexTokenSegments(testText, testTokens);
-
-      // Akzeptierte Token-Anzahl bestimmen
-      int accepted;
-      if (rFull == testTokens.rawSize()) {
-        // kompletter Erfolg
-        accepted = segs.size();
-      } else if (rFull >= 0 && rFull < testTokens.rawSize()) {
-        // Parser hat n akzeptiert und dann Schluss gemacht -> n ist Praefix
-        accepted = Math.min(rFull, segs.size());
-      } else if (rFull == -2) {
-        // EndOfQueue zu frueh: alles bisherige ist akzeptiert
-        accepted = segs.size();
-      } else {
-        // -1, -100 oder sonstiger Fehler: via Praefix-Suche ermitteln
-        accepted = parser.getTokenQueue().getLastTokenFound();
-      }
-
-      // Rot (verzoegert): nur, wenn wirklich Fehler/Extra vorliegt (also NICHT -2)
-      boolean shouldPaintRed =
-          (rFull == -1 || rFull == -100) ||
-              (rFull >= 0 && rFull < testTokens.rawSize());
-
-      if (segs.size() > MAX_HIGHLIGHT_SEGMENTS) {
-        int greenEnd = (accepted > 0) ? segs.get(accepted - 1)[1] : 0;
-        if (greenEnd > 0) results.add(new MatchResult(0, greenEnd, true));
-        if (shouldPaintRed && greenEnd < testText.length()) {
-          results.add(new MatchResult(greenEnd, testText.length(), false));
-        }
-        return results;
-      }
-
-      // Gruen: genau die akzeptierten Token-Segmente
-      for (int i = 0; i < accepted; i++) {
-        int[] s = segs.get(i);
-        if (testTokens.isUnhandledWhitespace(i)) continue;
-        results.add(new MatchResult(s[0], s[1], true));
-      }
-
-      if (shouldPaintRed) {
-        int tailStart = (accepted > 0) ? segs.get(accepted - 1)[1] : 0;
-        if (tailStart < testText.length()) {
-          results.add(new MatchResult(tailStart, testText.length(), false));
-        }
-      }
-
-    } catch (Exception e) {
-      System.err.println("Error parsing: " + e.getMessage());
-      results.clear();
-      results.add(new MatchResult(0, testText.length(), false));
-    }
-    return results;
-  }
-
-  private List<int[]> lexTokenSegments(String text, TokenQueue tokens) {
-    List<int[]> segs = new ArrayList<>();
-    if (text == null || tokens == null) return segs;
-
-    int cursor = 0;
-    for (String tok : tokens.getTokens()) {
-      if (tok == null) break;
-
-      int end = cursor + tok.length();
-      if (end > text.length()) break;
-
-      // Idealfall: 1:1 Slice Match
-      if (!text.regionMatches(cursor, tok, 0, tok.length())) {
-        // Fallback: nur um nicht komplett auszufallen (sollte im neuen System selten sein)
-        int start = text.indexOf(tok, cursor);
-        if (start < 0) break;
-        cursor = start;
-        end = cursor + tok.length();
-        if (end > text.length()) break;
-      }
-
-      segs.add(new int[]{cursor, end});
-      cursor = end;
-    }
-    return segs;
-  }
-
-  private List<MatchResult> computeMatchedTokenSegments(String text, List<String> tokens, int matchedCount) {
-    List<MatchResult> segs = new ArrayList<>();
-    if (matchedCount <= 0 || text == null || text.isEmpty() || tokens == null || tokens.isEmpty()) {
-      return segs;
-    }
-    int i = 0, consumed = 0;
-    while (consumed < matchedCount && i < text.length()) {
-      while (i < text.length()) {
-        int cp = text.codePointAt(i);
-        int cc = Character.charCount(cp);
-        if (!Character.isWhitespace(cp)) break;
-        i += cc; // Whitespace nicht highlighten
-      }
-      if (consumed >= matchedCount) break;
-      String tok = tokens.get(consumed);
-      if (tok == null || tok.isEmpty()) break;
-      if (i + tok.length() <= text.length() && text.startsWith(tok, i)) {
-        segs.add(new MatchResult(i, i + tok.length(), true)); // nur das Wort
-        i += tok.length();
-        consumed++;
-      } else break;
-    }
-    return segs;
+  private EbnfGrammarModel getModel(Document schemaDoc, TextSnapshot schemaSnap) {
+    // The grammar model builds the test parser at most once per schema revision
+    return EbnfGrammarModelService.getInstance(project)
+        .getModel(schemaDoc, schemaSnap.text, schemaSnap.stamp, EbnfCancellation.NONE);
   }
 
   private void applyHighlightsWithDelay(List<MatchResult> matches) {
     if (currentTestEditor == null) return;
 
-    // bei jeder Aenderung: alles Alte weg, Gruen sofort neu setzen
+    // Gruen und Rot nur dort anfassen, wo sich etwas geaendert hat; Rot bleibt bis zum
+    // verzoegerten Update stehen, damit der Diff die unveraenderten Fehler behalten kann
     errorAlarm.cancelAllRequests();
-    removeGreenHighlighters();
-    removeRedHighlighters();
 
     var doc = currentTestEditor.getDocument();
     long stamp = doc.getModificationStamp();
-    var mm = currentTestEditor.getMarkupModel();
 
-    // 4a) Gruen sofort
+    int[] green = new int[matches.size() * 2];
+    int[] red = new int[matches.size() * 2];
+    int greenCount = 0, redCount = 0;
     for (MatchResult m : matches) {
-      if (!m.isMatch) continue;
-      RangeHighlighter hl = mm.addRangeHighlighter(
-          m.startOffset, m.endOffset,
-          HighlighterLayer.SELECTION - 1,
-          MATCH_ATTRIBUTES,
-          HighlighterTargetArea.EXACT_RANGE
-      );
-      greenHighlighters.add(hl);
+      if (m.isMatch) {
+        green[greenCount * 2] = m.startOffset;
+        green[greenCount * 2 + 1] = m.endOffset;
+        greenCount++;
+      } else {
+        red[redCount * 2] = m.startOffset;
+        red[redCount * 2 + 1] = m.endOffset;
+        redCount++;
+      }
     }
 
-    // 4b) Rot spaeter (nur wenn es ueberhaupt rote Ranges gibt)
-    boolean hasRed = matches.stream().anyMatch(x -> !x.isMatch);
-    if (!hasRed) return;
+    // 4a) Gruen sofort
+    greenHighlights.update(currentTestEditor, green, greenCount);
+
+    // 4b) Rot spaeter - keine Fehler mehr: sofort weg
+    if (redCount == 0) {
+      removeRedHighlighters();
+      return;
+    }
 
+    int finalRedCount = redCount;
     errorAlarm.addRequest(() -> {
       // nur anwenden, wenn sich der Text seit dem Planen nicht veraendert hat
       if (currentTestEditor == null) return;
       if (currentTestEditor.getDocument().getModificationStamp() != stamp) return;
-
-      // falls zwischenzeitlich was Rot gesetzt wurde, bereinigen
-      removeRedHighlighters();
-      var mmNow = currentTestEditor.getMarkupModel();
-      for (MatchResult m : matches) {
-        if (m.isMatch) continue;
-        RangeHighlighter hl = mmNow.addRangeHighlighter(
-            m.startOffset, m.endOffset,
-            HighlighterLayer.SELECTION - 1,
-            ERROR_ATTRIBUTES,
-            HighlighterTargetArea.EXACT_RANGE
-        );
-        redHighlighters.add(hl);
-      }
+      redHighlights.update(currentTestEditor, red, finalRedCount);
     }, ERROR_DEBOUNCE_MS);
   }
 
@@ -459,15 +666,25 @@ public class EbnfLiveTesterPanel implements Disposable {
   public void dispose() {
     detachSchemaListener();
     detachTestListener();
-    for (Editor ed : testEditorsBySchema.values()) {
-      EditorFactory.getInstance().releaseEditor(ed);
+    if (fileViewer != null) {
+      EditorFactory.getInstance().releaseEditor(fileViewer);
+      fileViewer = null;
+    }
+    for (Map.Entry<VirtualFile, Editor> entry : testEditorsBySchema.entrySet()) {
+      releaseTestEditor(entry.getKey(), entry.getValue());
     }
     testEditorsBySchema.clear();
   }
 
-  private static class MatchResult {
-    final int startOffset, endOffset; final boolean isMatch;
-    MatchResult(int s, int e, boolean ok) { this.startOffset = s; this.endOffset = e; this.isMatch = ok; }
+  private void releaseTestEditor(VirtualFile schemaFile, Editor editor) {
+    saveTestText(schemaFile, editor);
+    EditorFactory.getInstance().releaseEditor(editor);
+  }
+
+  // The store writes on its own thread and finishes the queued saves when the project closes
+  private void saveTestText(VirtualFile schemaFile, Editor editor) {
+    String text = editor.getDocument().getImmutableCharSequence().toString();
+    EbnfTestBufferStore.getInstance(project).save(schemaFile.getPath(), text);
   }
 
   private static class TextSnapshot {
@@ -480,16 +697,10 @@ public class EbnfLiveTesterPanel implements Disposable {
   }
 
   private void removeGreenHighlighters() {
-    for (RangeHighlighter hl : greenHighlighters) {
-      try { hl.dispose(); } catch (Throwable ignored) {}
-    }
-    greenHighlighters.clear();
+    greenHighlights.clear();
   }
 
   private void removeRedHighlighters() {
-    for (RangeHighlighter hl : redHighlighters) {
-      try { hl.dispose(); } catch (Throwable ignored) {}
-    }
-    redHighlighters.clear();
+    redHighlights.clear();
   }
 }
@@ -12,8 +12,14 @@ public class EbnfLiveTesterToolWindowFactory implements ToolWindowFactory {
   @Override
   public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
     EbnfLiveTesterPanel testerPanel = new EbnfLiveTesterPanel(project);
-    Content content = ContentFactory.getInstance().createContent(testerPanel.getComponent(), "", false);
+    Content content = ContentFactory.getInstance().createContent(testerPanel.getComponent(), "Live", false);
     content.setDisposer(testerPanel);
     toolWindow.getContentManager().addContent(content);
+
+    EbnfCorpusPanel corpusPanel = new EbnfCorpusPanel(project);
+    Content corpus = ContentFactory.getInstance().createContent(corpusPanel.getComponent(), "Corpus", false);
+    corpus.setDisposer(corpusPanel);
+    corpus.putUserData(EbnfCorpusPanel.KEY, corpusPanel);
+    toolWindow.getContentManager().addContent(corpus);
   }
 }
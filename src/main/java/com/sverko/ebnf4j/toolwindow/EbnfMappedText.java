@@ -0,0 +1,70 @@
+package com.sverko.ebnf4j.toolwindow;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Read-only view of a file mapped into memory, one char per byte (ASCII or ISO-8859-1). The
+ * file content never ends up on the heap as a whole; {@link #subSequence} is another view, and
+ * only the parts turned into strings are copied.
+ */
+final class EbnfMappedText implements CharSequence {
+
+  private final MappedByteBuffer buffer;
+  private final int offset;
+  private final int length;
+
+  private EbnfMappedText(MappedByteBuffer buffer, int offset, int length) {
+    this.buffer = buffer;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /**
+   * The content of {@code file} as a mapped view: one char per byte if it is pure ASCII, else an
+   * indexed UTF-8 view, or again one char per byte (ISO-8859-1) if it is not valid UTF-8.
+   */
+  static CharSequence open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) throw new IOException("File too large: " + size + " bytes");
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+      int n = (int) size;
+      for (int i = 0; i < n; i++) {
+        if (buffer.get(i) < 0) {
+          EbnfMappedUtf8Text utf8 = EbnfMappedUtf8Text.index(buffer, n);
+          return utf8 != null ? utf8 : new EbnfMappedText(buffer, 0, n);
+        }
+      }
+      return new EbnfMappedText(buffer, 0, n);
+    }
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    return (char) (buffer.get(offset + index) & 0xFF);
+  }
+
+  @Override
+  public @NotNull CharSequence subSequence(int start, int end) {
+    return new EbnfMappedText(buffer, offset + start, end - start);
+  }
+
+  @Override
+  public @NotNull String toString() {
+    byte[] bytes = new byte[length];
+    buffer.get(offset, bytes);
+    return new String(bytes, StandardCharsets.ISO_8859_1);
+  }
+}
@@ -0,0 +1,125 @@
+package com.sverko.ebnf4j.toolwindow;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Read-only view of a mapped UTF-8 file. An index of char and byte offsets every
+ * {@link #BLOCK_CHARS} characters is built in one decoding pass; afterwards only the block that
+ * is being read is decoded onto the heap. {@link #subSequence} copies just its range.
+ * <p>
+ * Not thread-safe: the decoded block is cached for sequential reads.
+ */
+final class EbnfMappedUtf8Text implements CharSequence {
+
+  private static final int BLOCK_CHARS = 4096;
+
+  private final MappedByteBuffer buffer;
+  private final int length;
+  // Block b covers chars [blockChars[b], blockChars[b + 1]) and bytes [blockBytes[b], blockBytes[b + 1])
+  private final int[] blockChars;
+  private final int[] blockBytes;
+
+  private final CharsetDecoder decoder = newDecoder();
+  private int cachedBlock = -1;
+  private final char[] cached = new char[BLOCK_CHARS];
+
+  private EbnfMappedUtf8Text(MappedByteBuffer buffer, int length, int[] blockChars, int[] blockBytes) {
+    this.buffer = buffer;
+    this.length = length;
+    this.blockChars = blockChars;
+    this.blockBytes = blockBytes;
+  }
+
+  /** Indexes the first {@code size} bytes of {@code buffer}; {@code null} if they are not valid UTF-8. */
+  static @Nullable EbnfMappedUtf8Text index(MappedByteBuffer buffer, int size) {
+    CharsetDecoder decoder = newDecoder();
+    ByteBuffer in = buffer.slice(0, size);
+    CharBuffer out = CharBuffer.allocate(BLOCK_CHARS);
+    int[] chars = new int[64];
+    int[] bytes = new int[64];
+    int blocks = 0;
+    int length = 0;
+    while (true) {
+      if (blocks + 1 >= chars.length) {
+        chars = Arrays.copyOf(chars, chars.length * 2);
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+      }
+      chars[blocks] = length;
+      bytes[blocks] = in.position();
+      out.clear();
+      CoderResult result = decoder.decode(in, out, true);
+      if (result.isError()) return null;
+      if (out.position() == 0) break;
+      length += out.position();
+      blocks++;
+    }
+    if (decoder.flush(out).isError()) return null;
+    return new EbnfMappedUtf8Text(buffer, length, Arrays.copyOf(chars, blocks + 1), Arrays.copyOf(bytes, blocks + 1));
+  }
+
+  private static CharsetDecoder newDecoder() {
+    return StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT);
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length) throw new IndexOutOfBoundsException(index);
+    int block = blockOf(index);
+    decodeBlock(block);
+    return cached[index - blockChars[block]];
+  }
+
+  @Override
+  public @NotNull CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > length || start > end) throw new IndexOutOfBoundsException();
+    StringBuilder sb = new StringBuilder(end - start);
+    int i = start;
+    while (i < end) {
+      int block = blockOf(i);
+      decodeBlock(block);
+      int blockEnd = Math.min(end, blockChars[block + 1]);
+      sb.append(cached, i - blockChars[block], blockEnd - i);
+      i = blockEnd;
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public @NotNull String toString() {
+    return subSequence(0, length).toString();
+  }
+
+  private int blockOf(int index) {
+    if (cachedBlock >= 0 && index >= blockChars[cachedBlock] && index < blockChars[cachedBlock + 1]) {
+      return cachedBlock;
+    }
+    int b = Arrays.binarySearch(blockChars, index);
+    return b >= 0 ? b : -b - 2;
+  }
+
+  private void decodeBlock(int block) {
+    if (block == cachedBlock) return;
+    ByteBuffer in = buffer.slice(blockBytes[block], blockBytes[block + 1] - blockBytes[block]);
+    CharBuffer out = CharBuffer.wrap(cached);
+    decoder.reset();
+    // The bytes were validated while indexing
+    if (decoder.decode(in, out, true).isError()) throw new IllegalStateException("Mapped file changed");
+    cachedBlock = block;
+  }
+}
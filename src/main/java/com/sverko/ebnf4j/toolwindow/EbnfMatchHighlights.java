@@ -0,0 +1,175 @@
+package com.sverko.ebnf4j.toolwindow;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.markup.CustomHighlighterRenderer;
+import com.intellij.openapi.editor.markup.HighlighterLayer;
+import com.intellij.openapi.editor.markup.HighlighterTargetArea;
+import com.intellij.openapi.editor.markup.MarkupModel;
+import com.intellij.openapi.editor.markup.RangeHighlighter;
+import com.intellij.openapi.editor.markup.TextAttributes;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The green or red ranges of one test editor. Up to {@link #RENDERER_THRESHOLD} ranges are kept
+ * as one highlighter each, and an update only replaces the highlighters whose range changed.
+ * Above that, a single highlighter with a custom renderer paints the visible part of a compact
+ * {@code (start, end)} interval array.
+ */
+final class EbnfMatchHighlights {
+
+  static final int RENDERER_THRESHOLD = 2_000;
+
+  private static final int LAYER = HighlighterLayer.SELECTION - 1;
+
+  private final TextAttributes attributes;
+  private final Color paintColor;
+
+  // Sorted by start offset
+  private List<RangeHighlighter> highlighters = new ArrayList<>();
+  private RangeHighlighter rendererHighlighter;
+  private IntervalRenderer renderer;
+
+  EbnfMatchHighlights(TextAttributes attributes) {
+    this.attributes = attributes;
+    Color bg = attributes.getBackgroundColor();
+    this.paintColor = new Color(bg.getRed(), bg.getGreen(), bg.getBlue(), 0x90);
+  }
+
+  /** Shows {@code count} ranges, given as sorted {@code (start, end)} pairs in {@code ranges}. */
+  void update(@NotNull Editor editor, int[] ranges, int count) {
+    if (count > RENDERER_THRESHOLD) {
+      disposeHighlighters();
+      updateRenderer(editor, ranges, count);
+    } else {
+      disposeRenderer();
+      updateHighlighters(editor.getMarkupModel(), editor.getDocument(), ranges, count);
+    }
+  }
+
+  void clear() {
+    disposeHighlighters();
+    disposeRenderer();
+  }
+
+  private void updateHighlighters(MarkupModel markup, Document document, int[] ranges, int count) {
+    List<RangeHighlighter> old = highlighters;
+    List<RangeHighlighter> current = new ArrayList<>(count);
+
+    // Both lists are sorted by start offset: keep equal highlighters, replace the rest
+    int o = 0;
+    for (int n = 0; n < count; n++) {
+      int start = ranges[n * 2];
+      int end = ranges[n * 2 + 1];
+      if (end > document.getTextLength()) break;
+
+      while (o < old.size() && isBefore(old.get(o), start, end)) {
+        dispose(old.get(o++));
+      }
+      if (o < old.size() && isSame(old.get(o), start, end)) {
+        current.add(old.get(o++));
+        continue;
+      }
+      current.add(markup.addRangeHighlighter(start, end, LAYER, attributes, HighlighterTargetArea.EXACT_RANGE));
+    }
+    while (o < old.size()) {
+      dispose(old.get(o++));
+    }
+    highlighters = current;
+  }
+
+  private void updateRenderer(Editor editor, int[] ranges, int count) {
+    int[] intervals = new int[count * 2];
+    System.arraycopy(ranges, 0, intervals, 0, count * 2);
+
+    if (rendererHighlighter == null || !rendererHighlighter.isValid()) {
+      renderer = new IntervalRenderer(paintColor);
+      rendererHighlighter = editor.getMarkupModel().addRangeHighlighter(
+          0, editor.getDocument().getTextLength(), LAYER, null, HighlighterTargetArea.LINES_IN_RANGE);
+      rendererHighlighter.setGreedyToLeft(true);
+      rendererHighlighter.setGreedyToRight(true);
+      rendererHighlighter.setCustomRenderer(renderer);
+    }
+    renderer.intervals = intervals;
+    editor.getContentComponent().repaint();
+  }
+
+  private void disposeHighlighters() {
+    for (RangeHighlighter hl : highlighters) dispose(hl);
+    highlighters = new ArrayList<>();
+  }
+
+  private void disposeRenderer() {
+    if (rendererHighlighter != null) dispose(rendererHighlighter);
+    rendererHighlighter = null;
+    renderer = null;
+  }
+
+  private static void dispose(RangeHighlighter hl) {
+    try { hl.dispose(); } catch (Throwable ignored) {}
+  }
+
+  private static boolean isBefore(RangeHighlighter hl, int start, int end) {
+    if (!hl.isValid()) return true;
+    return hl.getStartOffset() < start || (hl.getStartOffset() == start && hl.getEndOffset() < end);
+  }
+
+  private static boolean isSame(RangeHighlighter hl, int start, int end) {
+    return hl.isValid() && hl.getStartOffset() == start && hl.getEndOffset() == end;
+  }
+
+  /** Paints the intervals that intersect the clip area, found by binary search. */
+  private static final class IntervalRenderer implements CustomHighlighterRenderer {
+    private final Color color;
+    volatile int[] intervals = new int[0];
+
+    IntervalRenderer(Color color) {
+      this.color = color;
+    }
+
+    @Override
+    public void paint(@NotNull Editor editor, @NotNull RangeHighlighter highlighter, @NotNull Graphics g) {
+      int[] iv = intervals;
+      int count = iv.length / 2;
+      if (count == 0) return;
+
+      Rectangle clip = g.getClipBounds();
+      if (clip == null) clip = editor.getScrollingModel().getVisibleArea();
+      Document document = editor.getDocument();
+      int textLength = document.getTextLength();
+      int firstLine = editor.xyToLogicalPosition(new Point(0, clip.y)).line;
+      int lastLine = editor.xyToLogicalPosition(new Point(0, clip.y + clip.height)).line;
+      if (firstLine >= document.getLineCount()) return;
+      int from = document.getLineStartOffset(firstLine);
+      int to = document.getLineEndOffset(Math.min(lastLine, document.getLineCount() - 1));
+
+      // First interval that ends after the visible start
+      int lo = 0, hi = count;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (iv[mid * 2 + 1] <= from) lo = mid + 1; else hi = mid;
+      }
+
+      g.setColor(color);
+      int lineHeight = editor.getLineHeight();
+      int width = editor.getContentComponent().getWidth();
+      for (int i = lo; i < count && iv[i * 2] < to; i++) {
+        int start = iv[i * 2];
+        int end = Math.min(iv[i * 2 + 1], textLength);
+        if (start >= end) continue;
+        Point p1 = editor.offsetToXY(start);
+        Point p2 = editor.offsetToXY(end);
+        if (p1.y == p2.y) {
+          g.fillRect(p1.x, p1.y, p2.x - p1.x, lineHeight);
+        } else {
+          g.fillRect(p1.x, p1.y, width - p1.x, lineHeight);
+          if (p2.y - p1.y > lineHeight) g.fillRect(0, p1.y + lineHeight, width, p2.y - p1.y - lineHeight);
+          g.fillRect(0, p2.y, p2.x, lineHeight);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package com.sverko.ebnf4j.toolwindow;
+
+import com.sverko.ebnf.ParseNodeEvent;
+import com.sverko.ebnf.ParseNodeEventListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The node events of one live-test parse as flat int arrays: rule id and token range per event.
+ * After the parse, {@link #buildTree} links every event to the events inside its range, again
+ * with int arrays only, so even millions of events need no per-event objects.
+ */
+final class EbnfParseEventLog implements ParseNodeEventListener {
+
+  static final int MAX_EVENTS = 5_000_000;
+
+  private final String text;
+  private final List<String> ruleNames = new ArrayList<>();
+  private final Map<String, Integer> ruleIds = new HashMap<>();
+  private int[] rules = new int[1024];
+  private int[] froms = new int[1024];
+  private int[] tos = new int[1024];
+  private int size;
+  private boolean truncated;
+
+  // (start, end) per token, set once the parse is done
+  private int[] tokenSegments = new int[0];
+
+  // Tree: children as linked lists, roots in event order
+  private int[] firstChild;
+  private int[] nextSibling;
+  private int[] roots;
+
+  EbnfParseEventLog(String text) {
+    this.text = text;
+  }
+
+  @Override
+  public void parseNodeEventOccurred(ParseNodeEvent e) {
+    if (size == MAX_EVENTS) {
+      truncated = true;
+      return;
+    }
+    if (size == rules.length) {
+      int capacity = Math.min(MAX_EVENTS, size * 2);
+      rules = Arrays.copyOf(rules, capacity);
+      froms = Arrays.copyOf(froms, capacity);
+      tos = Arrays.copyOf(tos, capacity);
+    }
+    rules[size] = ruleIds.computeIfAbsent(e.getNode().getName(), name -> {
+      ruleNames.add(name);
+      return ruleNames.size() - 1;
+    });
+    froms[size] = e.getTrimmedFromPtr();
+    tos[size] = e.getTrimmedToPtr();
+    size++;
+  }
+
+  void setTokenSegments(int[] tokenSegments) {
+    this.tokenSegments = tokenSegments;
+  }
+
+  /**
+   * Events are reported when a rule completes, so the events inside a range always come before
+   * it. A stack of open events therefore yields the parent of every event in one pass.
+   */
+  void buildTree() {
+    firstChild = new int[size];
+    nextSibling = new int[size];
+    Arrays.fill(firstChild, -1);
+    Arrays.fill(nextSibling, -1);
+
+    int[] stack = new int[Math.max(16, size)];
+    int top = 0;
+    for (int e = 0; e < size; e++) {
+      // Popped in reverse order, so prepending restores the event order
+      while (top > 0 && froms[stack[top - 1]] >= froms[e] && tos[stack[top - 1]] <= tos[e]) {
+        int child = stack[--top];
+        nextSibling[child] = firstChild[e];
+        firstChild[e] = child;
+      }
+      stack[top++] = e;
+    }
+    roots = Arrays.copyOf(stack, top);
+  }
+
+  int size() { return size; }
+  boolean isTruncated() { return truncated; }
+  int[] getRoots() { return roots; }
+
+  int[] getChildren(int event) {
+    int count = 0;
+    for (int c = firstChild[event]; c >= 0; c = nextSibling[c]) count++;
+    int[] children = new int[count];
+    int i = 0;
+    for (int c = firstChild[event]; c >= 0; c = nextSibling[c]) children[i++] = c;
+    return children;
+  }
+
+  boolean isLeaf(int event) {
+    return firstChild[event] < 0;
+  }
+
+  String getRuleName(int event) {
+    return ruleNames.get(rules[event]);
+  }
+
+  /** Character offset where the event's range starts, -1 if the tokens are not known. */
+  int getStartOffset(int event) {
+    int token = froms[event];
+    return token * 2 < tokenSegments.length ? tokenSegments[token * 2] : -1;
+  }
+
+  /** Character offset where the event's range ends, -1 if the tokens are not known. */
+  int getEndOffset(int event) {
+    int token = tos[event] - 1;
+    if (token < 0) return getStartOffset(event);
+    return token * 2 < tokenSegments.length ? tokenSegments[token * 2 + 1] : -1;
+  }
+
+  String getText() { return text; }
+}
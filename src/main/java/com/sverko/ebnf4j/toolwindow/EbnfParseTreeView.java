@@ -0,0 +1,134 @@
+package com.sverko.ebnf4j.toolwindow;
+
+import com.intellij.ui.ColoredTreeCellRenderer;
+import com.intellij.ui.SimpleTextAttributes;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.treeStructure.Tree;
+import com.intellij.util.ui.JBUI;
+import java.awt.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import javax.swing.*;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Parse-tree tab of the live tester. The tree model answers straight from an
+ * {@link EbnfParseEventLog}; node objects only exist for children of expanded nodes, and the
+ * tree renders only the visible rows. A status row above the tree says when the log stopped
+ * recording, so a tree that ends early is not mistaken for the whole parse.
+ */
+final class EbnfParseTreeView {
+
+  private static final int PREVIEW_CHARS = 60;
+
+  private final Tree tree = new Tree(new EventTreeModel(null));
+  private final JLabel status = new JLabel();
+  private final JComponent component = new JPanel(new BorderLayout());
+
+  /** Called with the start offset of a node the user selected. */
+  EbnfParseTreeView(IntConsumer navigate) {
+    status.setBorder(JBUI.Borders.empty(4, 8));
+    status.setVisible(false);
+    component.add(status, BorderLayout.NORTH);
+    component.add(new JBScrollPane(tree), BorderLayout.CENTER);
+    tree.setRootVisible(false);
+    tree.setShowsRootHandles(true);
+    tree.setLargeModel(true);
+    tree.setRowHeight(tree.getFontMetrics(tree.getFont()).getHeight() + 4);
+    tree.setCellRenderer(new ColoredTreeCellRenderer() {
+      @Override
+      public void customizeCellRenderer(@NotNull JTree t, Object value, boolean selected, boolean expanded,
+                                        boolean leaf, int row, boolean hasFocus) {
+        if (!(value instanceof EventNode node)) return;
+        EbnfParseEventLog log = node.log;
+        int start = log.getStartOffset(node.event);
+        int end = log.getEndOffset(node.event);
+        append(log.getRuleName(node.event), SimpleTextAttributes.REGULAR_BOLD_ATTRIBUTES);
+        append("  [" + start + ", " + end + ")", SimpleTextAttributes.GRAYED_ATTRIBUTES);
+        if (start >= 0 && end >= start && end <= log.getText().length()) {
+          append("  " + preview(log.getText(), start, end), SimpleTextAttributes.REGULAR_ATTRIBUTES);
+        }
+      }
+    });
+    tree.addTreeSelectionListener(e -> {
+      TreePath path = e.getNewLeadSelectionPath();
+      if (path != null && path.getLastPathComponent() instanceof EventNode node) {
+        int start = node.log.getStartOffset(node.event);
+        if (start >= 0) navigate.accept(start);
+      }
+    });
+  }
+
+  JComponent getComponent() { return component; }
+
+  void show(EbnfParseEventLog log) {
+    tree.setModel(new EventTreeModel(log));
+    status.setText("Baum nach " + EbnfParseEventLog.MAX_EVENTS + " Knoten abgeschnitten - der Rest des Parses fehlt.");
+    status.setVisible(log.isTruncated());
+  }
+
+  void clear() {
+    tree.setModel(new EventTreeModel(null));
+    status.setVisible(false);
+  }
+
+  private static String preview(String text, int start, int end) {
+    String s = text.substring(start, Math.min(end, start + PREVIEW_CHARS)).replace('\n', ' ').replace('\t', ' ');
+    return end - start > PREVIEW_CHARS ? s + "..." : s;
+  }
+
+  private record EventNode(EbnfParseEventLog log, int event) {
+  }
+
+  /** Read-only model; child arrays are computed per node on first access. */
+  private static final class EventTreeModel implements TreeModel {
+    private final Object root = new Object();
+    private final EbnfParseEventLog log;
+    private final Map<Object, int[]> children = new HashMap<>();
+
+    EventTreeModel(EbnfParseEventLog log) {
+      this.log = log;
+    }
+
+    private int[] childrenOf(Object parent) {
+      if (log == null) return new int[0];
+      return children.computeIfAbsent(parent, p ->
+          p == root ? log.getRoots() : log.getChildren(((EventNode) p).event()));
+    }
+
+    @Override public Object getRoot() { return root; }
+
+    @Override
+    public Object getChild(Object parent, int index) {
+      return new EventNode(log, childrenOf(parent)[index]);
+    }
+
+    @Override
+    public int getChildCount(Object parent) {
+      return childrenOf(parent).length;
+    }
+
+    @Override
+    public boolean isLeaf(Object node) {
+      return node != root && log.isLeaf(((EventNode) node).event());
+    }
+
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+      if (!(child instanceof EventNode node)) return -1;
+      int[] c = childrenOf(parent);
+      for (int i = 0; i < c.length; i++) {
+        if (c[i] == node.event()) return i;
+      }
+      return -1;
+    }
+
+    @Override public void valueForPathChanged(TreePath path, Object newValue) { }
+    @Override public void addTreeModelListener(TreeModelListener l) { }
+    @Override public void removeTreeModelListener(TreeModelListener l) { }
+  }
+}
@@ -0,0 +1,110 @@
+package com.sverko.ebnf4j.toolwindow;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Hot-rule table of the live tester's profiling mode, sortable by any column and exportable as CSV.
+ */
+final class EbnfProfilerView {
+
+  private static final Logger LOG = Logger.getInstance(EbnfProfilerView.class);
+
+  private final Project project;
+  private final ProfileTableModel model = new ProfileTableModel();
+  private final JBTable table = new JBTable(model);
+  private final JComponent component = new JBScrollPane(table);
+
+  EbnfProfilerView(Project project) {
+    this.project = project;
+    table.setAutoCreateRowSorter(true);
+  }
+
+  JComponent getComponent() { return component; }
+
+  void show(EbnfRuleProfile profile) {
+    model.setRows(profile.getRows());
+  }
+
+  void clear() {
+    model.setRows(List.of());
+  }
+
+  boolean isEmpty() {
+    return model.getRowCount() == 0;
+  }
+
+  /** Asks for a target file and writes the current rows to it. */
+  void exportCsv() {
+    FileSaverDescriptor descriptor = new FileSaverDescriptor("Export Rule Profile", "Regel-Profil als CSV speichern", "csv");
+    VirtualFileWrapper target = FileChooserFactory.getInstance()
+        .createSaveFileDialog(descriptor, project).save("ebnf-profile.csv");
+    if (target == null) return;
+
+    try (Writer out = Files.newBufferedWriter(target.getFile().toPath(), StandardCharsets.UTF_8)) {
+      out.write(String.join(",", ProfileTableModel.COLUMNS));
+      out.write('\n');
+      for (EbnfRuleProfile.Row row : model.rows) {
+        out.write(csv(row.rule) + "," + row.matches + "," + row.backtracks + "," + row.tokens + ","
+            + String.format(Locale.ROOT, "%.3f", row.nanos / 1e6) + "\n");
+      }
+    } catch (IOException e) {
+      LOG.warn("Error exporting profile to " + target.getFile(), e);
+      Messages.showErrorDialog(project, "Profil konnte nicht gespeichert werden: " + e.getMessage(), "Export Rule Profile");
+    }
+  }
+
+  private static String csv(String value) {
+    return "\"" + value.replace("\"", "\"\"") + "\"";
+  }
+
+  private static final class ProfileTableModel extends AbstractTableModel {
+    static final String[] COLUMNS = {"Rule", "Matches", "Backtracks", "Tokens", "Time (ms)"};
+    private List<EbnfRuleProfile.Row> rows = new ArrayList<>();
+
+    void setRows(List<EbnfRuleProfile.Row> rows) {
+      this.rows = rows;
+      fireTableDataChanged();
+    }
+
+    @Override public int getRowCount() { return rows.size(); }
+    @Override public int getColumnCount() { return COLUMNS.length; }
+    @Override public String getColumnName(int column) { return COLUMNS[column]; }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+      return switch (column) {
+        case 0 -> String.class;
+        case 4 -> Double.class;
+        default -> Long.class;
+      };
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+      EbnfRuleProfile.Row r = rows.get(row);
+      return switch (column) {
+        case 0 -> r.rule;
+        case 1 -> r.matches;
+        case 2 -> r.backtracks;
+        case 3 -> r.tokens;
+        default -> r.nanos / 1e6;
+      };
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package com.sverko.ebnf4j.toolwindow;
+
+import com.sverko.ebnf.ParseNodeEvent;
+import com.sverko.ebnf.ParseNodeEventListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-rule statistics of one live-test parse, collected from the node events of all rules.
+ * <p>
+ * The parser only reports rules that matched, so the profile counts matches. A rule matching
+ * again at a token position where it matched before means the parser went back and tried
+ * again; those are counted as backtracks. The time between two events is charged to the rule
+ * of the later event, which approximates the time spent in that rule and the rules it tried.
+ */
+final class EbnfRuleProfile implements ParseNodeEventListener {
+
+  private final Map<String, Row> rows = new HashMap<>();
+  private final Set<Long> matchedAt = new HashSet<>();
+  private long lastEventNanos;
+
+  /** Starts the clock; called right before the parse, so setup time is not charged to a rule. */
+  void start() {
+    lastEventNanos = System.nanoTime();
+  }
+
+  @Override
+  public void parseNodeEventOccurred(ParseNodeEvent e) {
+    long now = System.nanoTime();
+    String name = e.getNode().getName();
+    Row row = rows.computeIfAbsent(name, n -> new Row(n, rows.size()));
+
+    int from = e.getTrimmedFromPtr();
+    int to = e.getTrimmedToPtr();
+    row.matches++;
+    row.tokens += Math.max(0, to - from);
+    if (!matchedAt.add(((long) row.id << 32) | (from & 0xFFFFFFFFL))) row.backtracks++;
+    row.nanos += now - lastEventNanos;
+    lastEventNanos = now;
+  }
+
+  /** Rows sorted by time, most expensive first. */
+  List<Row> getRows() {
+    List<Row> result = new ArrayList<>(rows.values());
+    result.sort((a, b) -> Long.compare(b.nanos, a.nanos));
+    return result;
+  }
+
+  static final class Row {
+    final String rule;
+    final int id;
+    long matches;
+    long backtracks;
+    long tokens;
+    long nanos;
+
+    Row(String rule, int id) {
+      this.rule = rule;
+      this.id = id;
+    }
+  }
+}
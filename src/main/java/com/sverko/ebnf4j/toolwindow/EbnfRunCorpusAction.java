@@ -0,0 +1,70 @@
+package com.sverko.ebnf4j.toolwindow;
+
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.ui.content.Content;
+import com.sverko.ebnf4j.EbnfFileType;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Asks for a directory and parses every file in it against the selected grammar, with the
+ * results shown in the "Corpus" tab of the live tester.
+ */
+public class EbnfRunCorpusAction extends AnAction {
+
+  @Override
+  public @NotNull ActionUpdateThread getActionUpdateThread() {
+    return ActionUpdateThread.BGT;
+  }
+
+  @Override
+  public void update(@NotNull AnActionEvent e) {
+    e.getPresentation().setEnabled(e.getProject() != null);
+  }
+
+  @Override
+  public void actionPerformed(@NotNull AnActionEvent e) {
+    Project project = e.getProject();
+    if (project == null) return;
+
+    VirtualFile schemaFile = findSchemaFile(project, e.getData(CommonDataKeys.VIRTUAL_FILE));
+    if (schemaFile == null) {
+      Messages.showInfoMessage(project, "Oeffne zuerst die .ebnf-Datei, gegen die getestet werden soll.", "Run Corpus");
+      return;
+    }
+
+    VirtualFile directory = FileChooser.chooseFile(
+        FileChooserDescriptorFactory.createSingleFolderDescriptor(), project, null);
+    if (directory == null) return;
+
+    ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow("EBNF Live Tester");
+    if (toolWindow == null) return;
+    toolWindow.activate(() -> {
+      for (Content content : toolWindow.getContentManager().getContents()) {
+        EbnfCorpusPanel panel = content.getUserData(EbnfCorpusPanel.KEY);
+        if (panel == null) continue;
+        toolWindow.getContentManager().setSelectedContent(content);
+        panel.run(schemaFile, directory);
+        return;
+      }
+    });
+  }
+
+  private static VirtualFile findSchemaFile(Project project, VirtualFile contextFile) {
+    if (contextFile != null && contextFile.getFileType() instanceof EbnfFileType) return contextFile;
+    for (VirtualFile vf : FileEditorManager.getInstance(project).getSelectedFiles()) {
+      if (vf.getFileType() instanceof EbnfFileType) return vf;
+    }
+    return null;
+  }
+}
@@ -0,0 +1,118 @@
+package com.sverko.ebnf4j.toolwindow;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Test texts of the live tester as plain files in the IDE system directory, one per schema path.
+ * Only the schemas shown recently keep an editor; all other test texts live here.
+ * <p>
+ * Every save goes through one writer thread; the saves still queued are written when the
+ * project closes.
+ */
+@Service(Service.Level.PROJECT)
+public final class EbnfTestBufferStore implements Disposable {
+
+  private static final Logger LOG = Logger.getInstance(EbnfTestBufferStore.class);
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  private final Path directory;
+  // One writer thread, so saves of the same schema land in the order they were made
+  private final ExecutorService writer = AppExecutorUtil.createBoundedApplicationPoolExecutor("EBNF Test Buffers", 1);
+  // Texts queued for the writer, so a load right after a save sees them
+  private final Map<String, String> queued = new ConcurrentHashMap<>();
+
+  public EbnfTestBufferStore(Project project) {
+    directory = PathManager.getSystemDir().resolve("ebnf4j").resolve("test-buffers").resolve(project.getLocationHash());
+  }
+
+  public static EbnfTestBufferStore getInstance(@NotNull Project project) {
+    return project.getService(EbnfTestBufferStore.class);
+  }
+
+  /** The stored test text of the schema at {@code schemaPath}, empty if there is none. */
+  public String load(String schemaPath) {
+    String text = queued.get(schemaPath);
+    if (text != null) return text;
+    Path file = fileOf(schemaPath);
+    if (!Files.isRegularFile(file)) return "";
+    try {
+      return StringUtil.convertLineSeparators(Files.readString(file, StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      LOG.warn("Error loading test buffer of " + schemaPath, e);
+      return "";
+    }
+  }
+
+  /**
+   * Stores {@code text} as the test text of {@code schemaPath} on the writer thread; an empty
+   * text removes the file.
+   */
+  public void save(String schemaPath, String text) {
+    queued.put(schemaPath, text);
+    try {
+      writer.execute(() -> {
+        write(schemaPath, text);
+        queued.remove(schemaPath, text);
+      });
+    } catch (RejectedExecutionException e) {
+      // Saved after dispose: nothing else is queued any more
+      write(schemaPath, text);
+      queued.remove(schemaPath, text);
+    }
+  }
+
+  private void write(String schemaPath, String text) {
+    Path file = fileOf(schemaPath);
+    try {
+      if (text.isEmpty()) {
+        Files.deleteIfExists(file);
+        return;
+      }
+      Files.createDirectories(directory);
+      Files.writeString(file, text, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      LOG.warn("Error saving test buffer of " + schemaPath, e);
+    }
+  }
+
+  /** Waits for the queued saves, so no test text is lost when the project closes. */
+  @Override
+  public void dispose() {
+    writer.shutdown();
+    try {
+      if (!writer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOG.warn("Test buffers not saved within " + SHUTDOWN_TIMEOUT_SECONDS + " s");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private Path fileOf(String schemaPath) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(schemaPath.getBytes(StandardCharsets.UTF_8));
+      return directory.resolve(HexFormat.of().formatHex(hash, 0, 16) + ".txt");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
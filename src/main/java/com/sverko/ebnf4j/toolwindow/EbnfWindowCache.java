@@ -0,0 +1,74 @@
+package com.sverko.ebnf4j.toolwindow;
+
+import com.sverko.ebnf4j.model.EbnfTestGrammar;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcomes of parsing input windows, keyed by the window text and bounded by an estimate of the
+ * memory they use. Least recently used windows are evicted first; entries of another grammar
+ * are dropped as soon as a different grammar asks.
+ */
+final class EbnfWindowCache {
+
+  private static final int ENTRY_OVERHEAD = 96;
+  private static final int MATCH_BYTES = 32;
+
+  private final long maxBytes;
+  private final LinkedHashMap<String, EbnfLiveMatcher.Run> windows = new LinkedHashMap<>(64, 0.75f, true);
+  private EbnfTestGrammar grammar;
+  private long bytes;
+  private long hits;
+  private long misses;
+
+  EbnfWindowCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  synchronized EbnfLiveMatcher.Run get(EbnfTestGrammar grammar, String window) {
+    if (this.grammar != grammar) {
+      clear();
+      this.grammar = grammar;
+    }
+    EbnfLiveMatcher.Run run = windows.get(window);
+    if (run != null) hits++; else misses++;
+    return run;
+  }
+
+  synchronized void put(EbnfTestGrammar grammar, String window, EbnfLiveMatcher.Run run) {
+    if (this.grammar != grammar) return;
+    long size = sizeOf(window, run);
+    if (size > maxBytes) return;
+    EbnfLiveMatcher.Run previous = windows.put(window, run);
+    if (previous != null) bytes -= sizeOf(window, previous);
+    bytes += size;
+
+    Iterator<Map.Entry<String, EbnfLiveMatcher.Run>> it = windows.entrySet().iterator();
+    while (bytes > maxBytes && it.hasNext()) {
+      Map.Entry<String, EbnfLiveMatcher.Run> eldest = it.next();
+      bytes -= sizeOf(eldest.getKey(), eldest.getValue());
+      it.remove();
+    }
+  }
+
+  synchronized void clear() {
+    windows.clear();
+    bytes = 0;
+    hits = 0;
+    misses = 0;
+  }
+
+  synchronized long getBytes() { return bytes; }
+  synchronized long getMaxBytes() { return maxBytes; }
+
+  /** Share of lookups answered from the windowCache, 0 before the first lookup. */
+  synchronized double getHitRate() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  private static long sizeOf(String window, EbnfLiveMatcher.Run run) {
+    return ENTRY_OVERHEAD + 2L * window.length() + (long) MATCH_BYTES * run.matches.size() + 4L * run.checkpoints.length;
+  }
+}
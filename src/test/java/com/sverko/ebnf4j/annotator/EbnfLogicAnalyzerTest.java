@@ -0,0 +1,220 @@
+package com.sverko.ebnf4j.annotator;
+
+import static org.junit.Assert.assertEquals;
+
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.sverko.ebnf.Lexer;
+import com.sverko.ebnf4j.lexer.EbnfTokenTable;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Golden test of {@link EbnfLogicAnalyzer}: the single pass over the bracket partner index has to
+ * report exactly the issues of the original four-pass analyzer, which is kept below as
+ * {@link Reference}.
+ */
+public class EbnfLogicAnalyzerTest {
+
+  private static final String[] GRAMMARS = {
+      // One rule per detector
+      "A={B}|C;\nB=\"b\";\nC=\"c\";\n",
+      "A={\"\"};\nB={''};\n",
+      "A=[B]|B;\nB=\"b\";\n",
+      "A=(B)*;\nB=(\"b\")+;\n",
+      // Nesting of one kind and across kinds
+      "A={{B}|C}|D;\nB=[[C]|C]|[C];\nC=((\"c\")*|D)*;\nD={[(\"d\")]}|\"e\";\n",
+      // Unbalanced brackets
+      "A={B|C;\nB=[C]|C]|C;\nC=\"c\")*;\nD=(\"d\"*;\n",
+      // Spaces between the tokens: patterns spread over whitespace tokens are not reported
+      "A = {B} | C;\nB = [C] | C;\nC = (\"c\")* ;\n",
+      // Comments, specials and meta identifiers
+      "(* {X}|Y *)\nA={?DIGIT?}|\\n;\nB=[\\s]|\\s;\nC={:B}|A;\n",
+      // Patterns at the very end of the text
+      "A={B}|",
+      "A=[B]|B",
+      "A=(B)*",
+      "",
+  };
+
+  @Test
+  public void reportsTheIssuesOfTheReferenceAnalyzer() {
+    for (String grammar : GRAMMARS) {
+      assertSameIssues(grammar);
+    }
+  }
+
+  @Test
+  public void reportsTheIssuesOfTheReferenceAnalyzerOnLargeGrammars() {
+    assertSameIssues(fillerGrammar(500, false));
+    assertSameIssues(fillerGrammar(500, true));
+    assertSameIssues(deeplyNested(2000));
+  }
+
+  @Test
+  public void reportsEachPattern() {
+    assertEquals(List.of("WARNING C Unreachable alternative - '{...}' always matches (including empty)"),
+        describe("A={B}|C;"));
+    assertEquals(List.of("ERROR { Infinite empty loop - '{\"\"'}' creates endless empty matches"),
+        describe("A={\"\"};"));
+    assertEquals(List.of("WARNING B Redundant alternative - '[B]' already includes 'B'"),
+        describe("A=[B]|B;"));
+    assertEquals(List.of("ERROR ) Invalid repetition - repetitions are not allowed on grouped expressions"),
+        describe("A=(B)*;"));
+  }
+
+  private static void assertSameIssues(String grammar) {
+    List<String> tokens = new Lexer(EbnfRuleAnalysis.SCHEMA_LEXER_TOKENS, true).lexText(grammar).getTokens();
+    List<String> expected = new ArrayList<>();
+    for (EbnfLogicAnalyzer.LogicalIssue issue : Reference.analyze(tokens)) {
+      expected.add(format(issue));
+    }
+    List<String> actual = new ArrayList<>();
+    for (EbnfLogicAnalyzer.LogicalIssue issue : analyze(grammar)) {
+      actual.add(format(issue));
+    }
+    // The single pass reports in token order, the reference per detector
+    expected.sort(null);
+    actual.sort(null);
+    assertEquals(grammar, expected, actual);
+  }
+
+  private static List<EbnfLogicAnalyzer.LogicalIssue> analyze(String grammar) {
+    EbnfTokenTable tokens = EbnfTokenTable.of(grammar,
+        new Lexer(EbnfRuleAnalysis.SCHEMA_LEXER_TOKENS, true).lexText(grammar));
+    return new EbnfLogicAnalyzer(List.of()).analyzeGrammar(tokens, EbnfCancellation.NONE);
+  }
+
+  /** Severity, text of the reported token and message of every issue. */
+  private static List<String> describe(String grammar) {
+    EbnfTokenTable tokens = EbnfTokenTable.of(grammar,
+        new Lexer(EbnfRuleAnalysis.SCHEMA_LEXER_TOKENS, true).lexText(grammar));
+    List<String> result = new ArrayList<>();
+    for (EbnfLogicAnalyzer.LogicalIssue issue : new EbnfLogicAnalyzer(List.of()).analyzeGrammar(tokens, EbnfCancellation.NONE)) {
+      result.add(issue.severity + " " + tokens.getText(issue.tokenIndex) + " " + issue.message);
+    }
+    return result;
+  }
+
+  private static String format(EbnfLogicAnalyzer.LogicalIssue issue) {
+    return String.format("%08d %s %s", issue.tokenIndex, issue.severity, issue.message);
+  }
+
+  /** Rules with every operator of the language; {@code compact} leaves out the spaces. */
+  private static String fillerGrammar(int rules, boolean compact) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < rules; i++) {
+      String rule = "RULE_" + i + " = {\"a\"} | [RULE_" + (i + 1) + "] | RULE_" + (i + 1)
+          + ", (NAME | {\"\"})* | [X] | X - \"x\";\n";
+      sb.append(compact ? rule.replace(" ", "") : rule);
+    }
+    sb.append("RULE_").append(rules).append("=\"end\";\n");
+    return sb.toString();
+  }
+
+  /** One rule with brackets of all kinds nested {@code depth} deep. */
+  private static String deeplyNested(int depth) {
+    StringBuilder sb = new StringBuilder("A=");
+    String[] open = {"{", "[", "("};
+    String[] close = {"}|X", "]|X", ")*"};
+    for (int i = 0; i < depth; i++) sb.append(open[i % 3]);
+    sb.append("X");
+    for (int i = depth - 1; i >= 0; i--) sb.append(close[i % 3]);
+    return sb.append(";\n").toString();
+  }
+
+  /** The analyzer as it was before the partner index: four passes with rescans from every bracket. */
+  private static final class Reference {
+
+    static List<EbnfLogicAnalyzer.LogicalIssue> analyze(List<String> tokens) {
+      List<EbnfLogicAnalyzer.LogicalIssue> issues = new ArrayList<>();
+      findUnreachableAlternatives(tokens, issues);
+      findAlwaysEmptyLoops(tokens, issues);
+      findRedundantOptionals(tokens, issues);
+      findInvalidRepetitions(tokens, issues);
+      return issues;
+    }
+
+    private static void findUnreachableAlternatives(List<String> tokens, List<EbnfLogicAnalyzer.LogicalIssue> issues) {
+      for (int i = 0; i < tokens.size() - 4; i++) {
+        if (tokens.get(i).equals("{") && findClosing(tokens, i, "{", "}") != -1) {
+          int closingBrace = findClosing(tokens, i, "{", "}");
+          if (closingBrace + 1 < tokens.size() && tokens.get(closingBrace + 1).equals("|")) {
+            int alternativeIndex = closingBrace + 2;
+            if (alternativeIndex < tokens.size()) {
+              issues.add(new EbnfLogicAnalyzer.LogicalIssue(alternativeIndex,
+                  "Unreachable alternative - '{...}' always matches (including empty)",
+                  HighlightSeverity.WARNING));
+            }
+          }
+        }
+      }
+    }
+
+    private static void findAlwaysEmptyLoops(List<String> tokens, List<EbnfLogicAnalyzer.LogicalIssue> issues) {
+      for (int i = 0; i < tokens.size() - 2; i++) {
+        if (tokens.get(i).equals("{") &&
+            (tokens.get(i + 1).equals("\"\"") || tokens.get(i + 1).equals("''")) &&
+            tokens.get(i + 2).equals("}")) {
+          issues.add(new EbnfLogicAnalyzer.LogicalIssue(i,
+              "Infinite empty loop - '{\"\"'}' creates endless empty matches",
+              HighlightSeverity.ERROR));
+        }
+      }
+    }
+
+    private static void findRedundantOptionals(List<String> tokens, List<EbnfLogicAnalyzer.LogicalIssue> issues) {
+      for (int i = 0; i < tokens.size() - 4; i++) {
+        if (tokens.get(i).equals("[")) {
+          int closingBracket = findClosing(tokens, i, "[", "]");
+          if (closingBracket != -1 && closingBracket + 1 < tokens.size() && tokens.get(closingBracket + 1).equals("|")) {
+            int alternativeIndex = closingBracket + 2;
+            if (alternativeIndex < tokens.size() && tokens.get(i + 1).equals(tokens.get(alternativeIndex))) {
+              issues.add(new EbnfLogicAnalyzer.LogicalIssue(alternativeIndex,
+                  "Redundant alternative - '[" + tokens.get(i + 1) + "]' already includes '" + tokens.get(alternativeIndex) + "'",
+                  HighlightSeverity.WARNING));
+            }
+          }
+        }
+      }
+    }
+
+    private static void findInvalidRepetitions(List<String> tokens, List<EbnfLogicAnalyzer.LogicalIssue> issues) {
+      for (int i = 0; i < tokens.size() - 2; i++) {
+        if (tokens.get(i).equals(")") && (tokens.get(i + 1).equals("*") || tokens.get(i + 1).equals("+"))) {
+          if (findOpening(tokens, i) != -1) {
+            issues.add(new EbnfLogicAnalyzer.LogicalIssue(i,
+                "Invalid repetition - repetitions are not allowed on grouped expressions",
+                HighlightSeverity.ERROR));
+          }
+        }
+      }
+    }
+
+    private static int findClosing(List<String> tokens, int startIndex, String open, String close) {
+      int count = 0;
+      for (int i = startIndex + 1; i < tokens.size(); i++) {
+        if (tokens.get(i).equals(open)) {
+          count++;
+        } else if (tokens.get(i).equals(close)) {
+          if (count == 0) return i;
+          count--;
+        }
+      }
+      return -1;
+    }
+
+    private static int findOpening(List<String> tokens, int startIndex) {
+      int count = 0;
+      for (int i = startIndex - 1; i >= 0; i--) {
+        if (tokens.get(i).equals(")")) {
+          count++;
+        } else if (tokens.get(i).equals("(")) {
+          if (count == 0) return i;
+          count--;
+        }
+      }
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.sverko.ebnf4j.lexer;
+
+import com.intellij.lexer.Lexer;
+import com.intellij.testFramework.LexerTestCase;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Token streams of {@link EbnfLexer}, and restarts in the middle of the text: lexing from any
+ * token start with the state recorded there, including {@link EbnfLexer#IN_COMMENT} inside a
+ * multi-line comment, has to give the same tokens as the full lex.
+ */
+public class EbnfLexerTest extends LexerTestCase {
+
+  private static final String MULTI_LINE_COMMENT =
+      "A = B, (* first line\n" +
+      "   second \"line\" ?x\n" +
+      "\n" +
+      "   * last *) C;\n" +
+      "(* one line *)\n" +
+      "B = {: \"b\" } | ?digit?;\n" +
+      "(* open until the end\n" +
+      "C";
+
+  @Override
+  protected Lexer createLexer() {
+    return new EbnfLexer();
+  }
+
+  @Override
+  protected String getDirPath() {
+    return "";
+  }
+
+  public void testCommentIsOneTokenPerLine() {
+    doTest("(* a\nb *)A",
+        "COMMENT ('(* a\\n')\n" +
+        "COMMENT ('b *)')\n" +
+        "IDENTIFIER ('A')");
+  }
+
+  public void testRestartInsideMultiLineCommentMatchesFullLex() {
+    List<String> full = lex(MULTI_LINE_COMMENT, 0, MULTI_LINE_COMMENT.length(), EbnfLexer.INITIAL);
+    int continuations = 0;
+    for (int i = 0; i < full.size(); i++) {
+      String token = full.get(i);
+      int start = Integer.parseInt(token.substring(0, token.indexOf(' ')));
+      int state = Integer.parseInt(token.substring(token.lastIndexOf(' ') + 1));
+      if (state == EbnfLexer.IN_COMMENT) continuations++;
+      assertEquals("restart at " + start, full.subList(i, full.size()),
+          lex(MULTI_LINE_COMMENT, start, MULTI_LINE_COMMENT.length(), state));
+    }
+    // Three continuation lines of the first comment, one of the unterminated one
+    assertEquals(4, continuations);
+  }
+
+  public void testUnterminatedStringEndsAtLineEnd() {
+    doTest("A = \"abc\nB = 'x';",
+        "IDENTIFIER ('A')\n" +
+        "WHITESPACE (' ')\n" +
+        "ASSIGN ('=')\n" +
+        "WHITESPACE (' ')\n" +
+        "BAD_CHAR ('\"abc')\n" +
+        "WHITESPACE ('\\n')\n" +
+        "IDENTIFIER ('B')\n" +
+        "WHITESPACE (' ')\n" +
+        "ASSIGN ('=')\n" +
+        "WHITESPACE (' ')\n" +
+        "STRING (''x'')\n" +
+        "SEMICOLON (';')");
+  }
+
+  public void testUnclosedCharClassStaysOnItsLine() {
+    doTest("?digit\n?x?",
+        "BAD_CHAR ('?')\n" +
+        "IDENTIFIER ('digit')\n" +
+        "WHITESPACE ('\\n')\n" +
+        "CHAR_CLASS ('?x?')");
+  }
+
+  public void testNoTokenReadsPastTheBufferEnd() {
+    // The closing quote, '?' and "*)" lie behind the end offset
+    assertEquals(List.of("0 4 BAD_CHAR 0"), lex("\"abc\"", 0, 4, EbnfLexer.INITIAL));
+    assertEquals(List.of("0 1 BAD_CHAR 0", "1 3 IDENTIFIER 0"), lex("?ab?", 0, 3, EbnfLexer.INITIAL));
+    assertEquals(List.of("0 4 COMMENT 0"), lex("(* a *)", 0, 4, EbnfLexer.INITIAL));
+    assertEquals(List.of("2 5 COMMENT 1"), lex("x a *)", 2, 5, EbnfLexer.IN_COMMENT));
+  }
+
+  /** {@code start end type state} of every token in {@code [start, end)}. */
+  private static List<String> lex(CharSequence text, int start, int end, int state) {
+    EbnfLexer lexer = new EbnfLexer();
+    lexer.start(text, start, end, state);
+    List<String> tokens = new ArrayList<>();
+    for (; lexer.getTokenType() != null; lexer.advance()) {
+      tokens.add(lexer.getTokenStart() + " " + lexer.getTokenEnd() + " " + lexer.getTokenType() + " " + lexer.getState());
+    }
+    return tokens;
+  }
+}